@@ -0,0 +1,103 @@
+package Visual;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A time series that keeps every slot in a primitive array. Slots that have not been set hold
+ * NaN.
+ */
+public class ArrayTimeSeries implements WritableTimeSeries {
+  private final TimeAxis axis;
+  private final double[] values;
+
+  /**
+   * Constructs an empty series covering [start, end] in steps of the given size
+   *
+   * @param start the unix time of the first slot
+   * @param end   the unix time of the last slot
+   * @param step  the number of seconds between slots
+   * @throws IllegalArgumentException if the range or step is improper
+   */
+  public ArrayTimeSeries(long start, long end, long step) {
+    this(new TimeAxis(start, end, step));
+  }
+
+  /**
+   * Constructs an empty series with a slot for every time of the given axis
+   *
+   * @param axis the time axis
+   */
+  public ArrayTimeSeries(TimeAxis axis) {
+    this.axis = Objects.requireNonNull(axis, "Axis not Initialized");
+    this.values = new double[axis.size()];
+    Arrays.fill(values, Double.NaN);
+  }
+
+  @Override
+  public TimeAxis axis() {
+    return axis;
+  }
+
+  @Override
+  public long start() {
+    return axis.start();
+  }
+
+  @Override
+  public long step() {
+    return axis.step();
+  }
+
+  @Override
+  public int size() {
+    return values.length;
+  }
+
+  @Override
+  public int slot(long time) {
+    return axis.slot(time);
+  }
+
+  @Override
+  public long time(int slot) {
+    return axis.time(slot);
+  }
+
+  @Override
+  public double get(int slot) {
+    double watt = values[slot];
+    return watt == watt ? watt : 0;
+  }
+
+  @Override
+  public void set(int slot, double watt) {
+    values[slot] = watt;
+  }
+
+  @Override
+  public boolean isSet(int slot) {
+    double watt = values[slot];
+    return watt == watt;
+  }
+
+  @Override
+  public void read(int from, double[] dest, int offset, int length) {
+    System.arraycopy(values, from, dest, offset, length);
+    for (int i = offset; i < offset + length; i++) {
+      if (dest[i] != dest[i]) {
+        dest[i] = 0;
+      }
+    }
+  }
+
+  @Override
+  public DoubleBuffer view(int from, int to) {
+    if (from < 0 || from > to || to > values.length) {
+      throw new IndexOutOfBoundsException("No such range: " + Integer.toString(from) + ", "
+              + Integer.toString(to));
+    }
+    return DoubleBuffer.wrap(values, from, to - from).slice().asReadOnlyBuffer();
+  }
+}
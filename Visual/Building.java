@@ -1,9 +1,11 @@
 package Visual;
 
 /**
- * Represents a building.
+ * Represents a building. Buildings never change once built, and every reading is looked up by
+ * an explicit time, so one building can be read from many threads at once. Views that need a
+ * current time keep it themselves, in a {@link TimeCursor}.
  */
-public interface Building extends Comparable<Building>{
+public interface Building {
   /**
    * @return the name of the building
    */
@@ -54,35 +56,87 @@ public interface Building extends Comparable<Building>{
   /**
    * Returns the latitude and longitude points that make up the corners of the buildling
    *
-   * @return the outline
+   * @return the outline, unpacked into a new array
    */
   LatLong[] outline();
 
   /**
-   * Returns the current time stamp of the building
+   * Returns the outline of the building packed into a single array of coordinates
    *
-   * @return the current unix time stamp
+   * @return the outline
    */
-  long currentTime();
+  PackedPolygon packedOutline();
 
   /**
-   * Changes the currentTime of the building to the given unixTime
-   * @param time the nex unix time of the building
+   * The wattage of electricity the building was using at the specified time
+   *
+   * @return the wattage at the specified time
+   * @param time
    */
-  void changeTime(long time);
+  double wattage(long time);
 
   /**
-   * The current wattage of electricity the building is using.
+   * Looks up the wattage at each of the given times in one call, rounding each time to its
+   * nearest reading
    *
-   * @return the wattage
+   * @param times the unix times
+   * @param out   the array to write the wattage of each time into, at the same index
+   * @throws IndexOutOfBoundsException if out is shorter than times
    */
-  double currentWattage();
+  void wattage(long[] times, double[] out);
 
   /**
-   * The wattage of electricity the building was using at the specified time
+   * The mean wattage of the sites of the building for every slot, computed once and then cached
    *
-   * @return the wattage at the specified time
-   * @param time
+   * @return the series of the building's wattage
    */
-  double wattage(long time);
+  TimeSeries series();
+
+  /**
+   * Returns the index of the times none of the sites of the building had a reading, built on
+   * first use
+   *
+   * @return the outages of the building
+   */
+  OutageIndex outages();
+
+  /**
+   * The energy the building used between the given unix times, in watt hours
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the energy used in [from, to)
+   * @throws IllegalArgumentException if to is before from
+   */
+  double energy(long from, long to);
+
+  /**
+   * The mean wattage of the building between the given unix times
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the mean wattage in [from, to)
+   * @throws IllegalArgumentException if there are no readings in [from, to)
+   */
+  double averageWattage(long from, long to);
+
+  /**
+   * The highest wattage of the building between the given unix times
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the peak wattage in [from, to)
+   * @throws IllegalArgumentException if there are no readings in [from, to)
+   */
+  double peak(long from, long to);
+
+  /**
+   * The lowest wattage of the building between the given unix times
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the lowest wattage in [from, to)
+   * @throws IllegalArgumentException if there are no readings in [from, to)
+   */
+  double trough(long from, long to);
 }
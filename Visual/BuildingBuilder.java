@@ -11,12 +11,12 @@ public class BuildingBuilder {
   private String name;
   private int bID = -1;
   private Site[] sites;
+  private TimeAxis axis;
   private int footprint;
   private int perimeter;
   private double area;
   private LatLong centroid;
-  private LatLong[] outline;
-  private long currentTime;
+  private PackedPolygon outline;
 
   /**
    * Creates the initial, empty builder
@@ -53,6 +53,16 @@ public class BuildingBuilder {
     return this;
   }
 
+  /**
+   * Sets the time axis shared by the readings of the campus
+   * @param axis the time axis
+   * @return this builder
+   */
+  public BuildingBuilder axis(TimeAxis axis) {
+    this.axis = axis;
+    return this;
+  }
+
   /**
    * Sets the footprint
    * @param footprint the footprint of the building
@@ -99,17 +109,18 @@ public class BuildingBuilder {
    * @return
    */
   public BuildingBuilder outline(LatLong[] outline) {
-    this.outline = outline;
+    Objects.requireNonNull(outline, "Outline not Initialized");
+    this.outline = PackedPolygon.of(outline);
     return this;
   }
 
   /**
-   * Sets the current time for the building
-   * @param currentTime the current time in unix
+   * Sets the outline of the building
+   * @param outline the outline of the building, packed into a single array
    * @return this builder
    */
-  public BuildingBuilder currentTime(long currentTime) {
-    this.currentTime = currentTime;
+  public BuildingBuilder outline(PackedPolygon outline) {
+    this.outline = outline;
     return this;
   }
 
@@ -133,9 +144,10 @@ public class BuildingBuilder {
   public Building build() {
     Objects.requireNonNull(this.name, "Name not Initialized");
     Objects.requireNonNull(this.sites, "Sites not Initialized");
+    Objects.requireNonNull(this.axis, "Axis not Initialized");
     Objects.requireNonNull(this.centroid, "Centroid not Initialized");
     Objects.requireNonNull(this.outline, "Outline not Initialized");
-    return new BuildingImpl(this.name, this.bID, this.sites, this.footprint, this.perimeter,
-            this.area, this.centroid, this.outline, this.currentTime);
+    return new BuildingImpl(this.name, this.bID, this.sites, this.axis, this.footprint,
+            this.perimeter, this.area, this.centroid, this.outline);
   }
 }
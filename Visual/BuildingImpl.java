@@ -4,19 +4,24 @@ import java.util.Arrays;
 import java.util.Objects;
 
 /**
- * An implementation of the building class that reads data from CVS readers.
+ * An implementation of the building class that reads data from CVS readers. Every field is
+ * final, and the series and indices that are built on first use are published through volatile
+ * fields, so a building can be read from many threads without locking.
  */
 public class BuildingImpl implements Building {
 
-  private String name;
-  private int bID;
-  private Site[] sites;
-  private int footprint;
-  private int perimeter;
-  private double area;
-  private LatLong centroid;
-  private LatLong[] outline;
-  private long currentTime;
+  private final String name;
+  private final int bID;
+  private final Site[] sites;
+  private final TimeAxis axis;
+  private final int footprint;
+  private final int perimeter;
+  private final double area;
+  private final LatLong centroid;
+  private final PackedPolygon outline;
+  private volatile TimeSeries aggregate;
+  private volatile RangeIndex index;
+  private volatile OutageIndex outages;
 
 
   /**
@@ -24,31 +29,73 @@ public class BuildingImpl implements Building {
    * @param name the name of the building
    * @param bID the id of the building
    * @param sites the electric meters of the building
+   * @param axis the time axis shared by the readings of the campus
    * @param footprint the footprint of the building
    * @param perimeter the perimeter of the building
    * @param area the area of the building
    * @param centroid the center of the building in latitude/longitude
    * @param outline the outline of the building in latitude/longitude
-   * @param currentTime the current time of the building
    * @throws NullPointerException if any of the parameters have not been set.
    */
-  public BuildingImpl(String name, int bID, Site[] sites, int footprint, int perimeter,
-                      double area, LatLong centroid, LatLong[] outline, long currentTime)
+  public BuildingImpl(String name, int bID, Site[] sites, TimeAxis axis, int footprint,
+                      int perimeter, double area, LatLong centroid, LatLong[] outline)
+  {
+    this(name, bID, sites, axis, footprint, perimeter, area, centroid,
+            PackedPolygon.of(outline));
+  }
+
+  /**
+   * A public constructor that constructs the building from the parameters
+   * @param name the name of the building
+   * @param bID the id of the building
+   * @param sites the electric meters of the building
+   * @param axis the time axis shared by the readings of the campus
+   * @param footprint the footprint of the building
+   * @param perimeter the perimeter of the building
+   * @param area the area of the building
+   * @param centroid the center of the building in latitude/longitude
+   * @param outline the outline of the building, packed into a single array
+   * @throws NullPointerException if any of the parameters have not been set.
+   */
+  public BuildingImpl(String name, int bID, Site[] sites, TimeAxis axis, int footprint,
+                      int perimeter, double area, LatLong centroid, PackedPolygon outline)
+  {
+    this(name, bID, sites, axis, footprint, perimeter, area, centroid, outline, null);
+  }
+
+  /**
+   * Copies the fields of the given building onto the given sites, whose mean wattage is kept in
+   * the given series instead of being computed from the sites, such as a compressed series or
+   * one that a live campus keeps up to date
+   *
+   * @param b      the building to copy
+   * @param sites  the electric meters of the building
+   * @param series the mean wattage of the sites
+   */
+  BuildingImpl(Building b, Site[] sites, TimeSeries series) {
+    this(b.name(), b.buildingID(), sites, series.axis(), b.footprint(), b.perimeter(), b.area(),
+            b.centroid(), b.packedOutline(), series);
+  }
+
+  private BuildingImpl(String name, int bID, Site[] sites, TimeAxis axis, int footprint,
+                       int perimeter, double area, LatLong centroid, PackedPolygon outline,
+                       TimeSeries series)
   {
     Objects.requireNonNull(name, "Name not Initialized");
     Objects.requireNonNull(sites, "Sites not Initialized");
+    Objects.requireNonNull(axis, "Axis not Initialized");
     Objects.requireNonNull(centroid, "Centroid not Initialized");
     Objects.requireNonNull(outline, "Outline not Initialized");
-    Objects.requireNonNull(currentTime, "Current Time not Initialized");
     this.name = name;
     this.bID = bID;
     this.sites = sites;
+    this.axis = axis;
     this.footprint = footprint;
     this.perimeter = perimeter;
     this.area = area;
     this.centroid = centroid;
     this.outline = outline;
-    this.currentTime = currentTime;
+    this.aggregate = series;
   }
 
   @Override
@@ -88,36 +135,147 @@ public class BuildingImpl implements Building {
 
   @Override
   public LatLong[] outline() {
+    return outline.toLatLongs();
+  }
+
+  @Override
+  public PackedPolygon packedOutline() {
     return outline;
   }
 
   @Override
-  public long currentTime() {
-    return currentTime;
+  public double wattage(long time) {
+    TimeSeries series = series();
+    return series.get(series.slot(time));
+  }
+
+  @Override
+  public void wattage(long[] times, double[] out) {
+    if (out.length < times.length) {
+      throw new IndexOutOfBoundsException("Output is shorter than the times");
+    }
+    TimeSeries series = series();
+    for (int i = 0; i < times.length; i++) {
+      out[i] = series.get(series.slot(times[i]));
+    }
   }
 
   @Override
-  public void changeTime(long time) {
-    long roundedTime = SiteImpl.roundToNearestTime(1386547200, 1418168700, 900, time);
-    currentTime = roundedTime;
+  public TimeSeries series() {
+    TimeSeries result = aggregate;
+    if (result == null) {
+      result = aggregate(sites, axis);
+      aggregate = result;
+    }
+    return result;
   }
 
   @Override
-  public double currentWattage() {
-    return wattage(currentTime);
+  public double energy(long from, long to) {
+    return rangeIndex().energy(from, to);
   }
 
   @Override
-  public double wattage(long time) {
-    int siteNum = sites.length;
-    double total = 0;
-    if (siteNum < 1) {
-      return 0;
+  public double averageWattage(long from, long to) {
+    return rangeIndex().average(from, to);
+  }
+
+  @Override
+  public double peak(long from, long to) {
+    return rangeIndex().peak(from, to);
+  }
+
+  @Override
+  public double trough(long from, long to) {
+    return rangeIndex().trough(from, to);
+  }
+
+  /**
+   * Catches up with a reading of one of the sites that was recorded at the given time. The
+   * range index is dropped, while the outages only change the bit of the slot, which has a
+   * reading if any of the sites has one.
+   *
+   * @param time the unix time of the reading
+   */
+  void recorded(long time) {
+    index = null;
+    OutageIndex result = outages;
+    if (result != null) {
+      boolean hasReading = false;
+      for (Site s : sites) {
+        TimeSeries series = s.series();
+        hasReading |= series.isSet(series.slot(time));
+      }
+      result.mark(series().slot(time), hasReading);
+    }
+  }
+
+  /**
+   * Drops the range index, after the series has changed underneath it
+   */
+  void invalidate() {
+    index = null;
+    outages = null;
+  }
+
+  @Override
+  public OutageIndex outages() {
+    OutageIndex result = outages;
+    if (result == null) {
+      result = OutageIndex.of(sites, series());
+      outages = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the range index over the series, building it on first use
+   *
+   * @return the range index
+   */
+  private RangeIndex rangeIndex() {
+    RangeIndex result = index;
+    if (result == null) {
+      result = new RangeIndex(series());
+      index = result;
+    }
+    return result;
+  }
+
+  /**
+   * Computes the mean wattage of the given sites for every slot of the given time axis. A
+   * building without sites has a series on the axis that was never set, so it reads 0 at every
+   * time.
+   *
+   * @param sites the sites to average
+   * @param axis  the time axis shared by the readings of the campus
+   * @return the series of the mean wattage
+   */
+  static TimeSeries aggregate(Site[] sites, TimeAxis axis) {
+    ArrayTimeSeries result = new ArrayTimeSeries(axis);
+    if (sites.length < 1) {
+      return result;
     }
+    int size = axis.size();
+    double[] totals = new double[size];
+    double[] values = new double[size];
     for (Site s : sites) {
-      total += s.wattage(time);
+      TimeSeries series = s.series();
+      if (series.axis().equals(axis)) {
+        series.read(0, values, 0, size);
+      } else {
+        for (int slot = 0; slot < size; slot++) {
+          values[slot] = s.wattage(axis.time(slot));
+        }
+      }
+      for (int slot = 0; slot < size; slot++) {
+        totals[slot] += values[slot];
+      }
     }
-    return total / siteNum;
+    for (int slot = 0; slot < size; slot++) {
+      result.set(slot, totals[slot] / sites.length);
+    }
+    return result;
   }
 
   @Override
@@ -125,13 +283,6 @@ public class BuildingImpl implements Building {
     return "Visual.Building: [" + name + ", " + Integer.toString(bID) + "], Sites: " +
             Arrays.toString(sites) + ", Specs: [" + "footprint: " + Integer.toString(footprint) +
             ", perimeter: " + Integer.toString(perimeter) + ", area: " + Double.toString(area) +
-            "] Coordinates: " + centroid.toString() + ", " + Arrays.toString(outline) +
-            ", Data: [" + Long.toString(currentTime) + ", " + Double.toString(currentWattage()) +
-            "Watts]";
-  }
-
-  @Override
-  public int compareTo(Building other) {
-    return Double.compare(currentWattage(), other.currentWattage());
+            "] Coordinates: " + centroid.toString() + ", " + Arrays.toString(outline.toLatLongs());
   }
 }
@@ -0,0 +1,275 @@
+package Visual;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The buildings of the campus and their sites, found by id, along with the time the campus is
+ * being looked at. Ids are counted up from 0 by the csv files, so buildings and sites are kept
+ * in arrays indexed by their ids, and finding one is a single array read however many there
+ * are. The buildings never change and the current time is swapped whole, so a campus can be
+ * read from any thread.
+ */
+public final class Campus {
+  private static final Site[] NO_SITES = new Site[0];
+
+  private final List<Building> buildings;
+  // buildingsByID[id] is the building with the id, or null if there is none
+  private final Building[] buildingsByID;
+  // indexesByID[id] is the index of the building with the id in the list, or -1 if there is none
+  private final int[] indexesByID;
+  // sitesByID[id] is the site with the id, or null if there is none
+  private final Site[] sitesByID;
+  // The cursor holds the axis as well as the time, so that both are swapped in a single write
+  // when a live campus moves its window of readings
+  private volatile TimeCursor cursor;
+
+  /**
+   * Creates a campus of the given buildings, looking at the start of their readings. Buildings
+   * and sites with a negative id cannot be found by id.
+   *
+   * @param buildings the buildings, all of which share a time axis
+   * @throws IllegalArgumentException if there are no buildings, two buildings or two sites
+   *                                  have the same id, or the buildings are on different axes
+   */
+  public Campus(List<? extends Building> buildings) {
+    Objects.requireNonNull(buildings, "Buildings not Initialized");
+    if (buildings.isEmpty()) {
+      throw new IllegalArgumentException("Need at least one building");
+    }
+    int maxBuildingID = -1;
+    int maxSiteID = -1;
+    for (Building b : buildings) {
+      maxBuildingID = Math.max(maxBuildingID, b.buildingID());
+      for (Site s : b.sites()) {
+        maxSiteID = Math.max(maxSiteID, s.siteID());
+      }
+    }
+    this.buildings = Collections.unmodifiableList(new ArrayList<Building>(buildings));
+    this.buildingsByID = new Building[maxBuildingID + 1];
+    this.indexesByID = new int[maxBuildingID + 1];
+    this.sitesByID = new Site[maxSiteID + 1];
+    Arrays.fill(indexesByID, -1);
+    for (int i = 0; i < buildings.size(); i++) {
+      Building b = buildings.get(i);
+      if (b.buildingID() >= 0) {
+        if (buildingsByID[b.buildingID()] != null) {
+          throw new IllegalArgumentException("Duplicate building: " + b.buildingID());
+        }
+        buildingsByID[b.buildingID()] = b;
+        indexesByID[b.buildingID()] = i;
+      }
+      for (Site s : b.sites()) {
+        if (s.siteID() >= 0) {
+          if (sitesByID[s.siteID()] != null) {
+            throw new IllegalArgumentException("Duplicate site: " + s.siteID());
+          }
+          sitesByID[s.siteID()] = s;
+        }
+      }
+    }
+    TimeAxis axis = axisOf(buildings);
+    this.cursor = new TimeCursor(axis, axis.start());
+  }
+
+  /**
+   * Finds the time axis of the readings of the given buildings, taken from their sites, as a
+   * building without sites has no readings of its own
+   *
+   * @param buildings the buildings
+   * @return the time axis they share
+   * @throws IllegalArgumentException if the buildings are on different axes
+   */
+  private static TimeAxis axisOf(List<? extends Building> buildings) {
+    TimeAxis axis = null;
+    for (Building b : buildings) {
+      if (b.sites().length > 0) {
+        axis = b.sites()[0].series().axis();
+        break;
+      }
+    }
+    if (axis == null) {
+      axis = buildings.get(0).series().axis();
+    }
+    for (Building b : buildings) {
+      if (!axis.equals(b.series().axis())) {
+        throw new IllegalArgumentException("Building not on the campus time axis: "
+                + b.buildingID());
+      }
+    }
+    return axis;
+  }
+
+  /**
+   * Groups the given sites by the building they belong to in one pass, keeping their order.
+   * Sites of a building with a negative id, or an id above the given one, are left out.
+   *
+   * @param sites         the sites to group
+   * @param maxBuildingID the highest building id to group for
+   * @return the sites of each building, indexed by building id
+   */
+  static Site[][] groupByBuilding(List<? extends Site> sites, int maxBuildingID) {
+    int[] counts = new int[maxBuildingID + 1];
+    for (Site s : sites) {
+      int id = s.buildingID();
+      if (id >= 0 && id <= maxBuildingID) {
+        counts[id]++;
+      }
+    }
+    Site[][] groups = new Site[maxBuildingID + 1][];
+    for (int id = 0; id <= maxBuildingID; id++) {
+      groups[id] = counts[id] == 0 ? NO_SITES : new Site[counts[id]];
+      counts[id] = 0;
+    }
+    for (Site s : sites) {
+      int id = s.buildingID();
+      if (id >= 0 && id <= maxBuildingID) {
+        groups[id][counts[id]++] = s;
+      }
+    }
+    return groups;
+  }
+
+  /**
+   * Returns the buildings, in the order they were given
+   *
+   * @return the buildings
+   */
+  public List<Building> buildings() {
+    return buildings;
+  }
+
+  /**
+   * Returns the building with the given id
+   *
+   * @param buildingID the id of the building
+   * @return the building, or null if there is none
+   */
+  public Building building(int buildingID) {
+    return buildingID >= 0 && buildingID < buildingsByID.length
+            ? buildingsByID[buildingID] : null;
+  }
+
+  /**
+   * Returns the index of the building with the given id in the list of buildings, which is also
+   * its index in every snapshot of the campus
+   *
+   * @param buildingID the id of the building
+   * @return the index, or -1 if there is no such building
+   */
+  public int indexOf(int buildingID) {
+    return buildingID >= 0 && buildingID < indexesByID.length ? indexesByID[buildingID] : -1;
+  }
+
+  /**
+   * Returns the site with the given id
+   *
+   * @param siteID the id of the site
+   * @return the site, or null if there is none
+   */
+  public Site site(int siteID) {
+    return siteID >= 0 && siteID < sitesByID.length ? sitesByID[siteID] : null;
+  }
+
+  /**
+   * Returns the sites of the building with the given id
+   *
+   * @param buildingID the id of the building
+   * @return the sites, which are empty if there is no such building
+   */
+  public Site[] sitesOf(int buildingID) {
+    Building b = building(buildingID);
+    return b == null ? NO_SITES : b.sites();
+  }
+
+  /**
+   * Returns the time axis the buildings share, which moves forward as live readings arrive
+   *
+   * @return the time axis
+   */
+  public TimeAxis axis() {
+    return cursor.axis();
+  }
+
+  /**
+   * Returns the time the campus is being looked at
+   *
+   * @return the cursor at the current time
+   */
+  public TimeCursor cursor() {
+    return cursor;
+  }
+
+  /**
+   * Returns the unix time the campus is being looked at
+   *
+   * @return the current time
+   */
+  public long time() {
+    return cursor.time();
+  }
+
+  /**
+   * Looks at the slot nearest to the given time
+   *
+   * @param time the unix time
+   * @return the cursor at the new current time
+   */
+  public synchronized TimeCursor moveTo(long time) {
+    cursor = cursor.moveTo(time);
+    return cursor;
+  }
+
+  /**
+   * Catches the campus up with a window of live readings that has moved, then looks at the
+   * slot nearest to the given time
+   *
+   * @param moved the time axis the buildings are on now
+   * @param time  the unix time
+   * @return the cursor at the new current time
+   * @throws IllegalArgumentException if the readings are spaced differently on the given axis
+   */
+  public synchronized TimeCursor moveTo(TimeAxis moved, long time) {
+    Objects.requireNonNull(moved, "Axis not Initialized");
+    if (moved.step() != cursor.axis().step()) {
+      throw new IllegalArgumentException("Axis step changed: " + moved.step());
+    }
+    cursor = new TimeCursor(moved, time);
+    return cursor;
+  }
+
+  /**
+   * Looks the given number of slots later, or earlier if negative, stopping at either end of
+   * the readings
+   *
+   * @param slots the number of slots to move by
+   * @return the cursor at the new current time
+   */
+  public synchronized TimeCursor move(int slots) {
+    cursor = cursor.move(slots);
+    return cursor;
+  }
+
+  /**
+   * Takes a snapshot of the buildings at the current time
+   *
+   * @return the snapshot
+   */
+  public CampusSnapshot snapshot() {
+    TimeCursor current = cursor;
+    return CampusSnapshot.of(buildings, current.axis(), current.time());
+  }
+
+  /**
+   * Takes a snapshot of the buildings at the given time
+   *
+   * @param time the unix time
+   * @return the snapshot
+   */
+  public CampusSnapshot snapshot(long time) {
+    return CampusSnapshot.of(buildings, cursor.axis(), time);
+  }
+}
@@ -0,0 +1,319 @@
+package Visual;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * A binary cache of the fully built buildings, written next to the csv files. The cache is keyed
+ * by the size, modification time and checksum of each source file. A source whose size and
+ * modification time are unchanged is trusted without reading it, and a source that was only
+ * touched is recognized by its checksum. The cache is memory mapped when loaded, so the series
+ * read straight out of it. All values are big endian.
+ *
+ * <pre>
+ *   int    magic
+ *   int    version
+ *   long[3][3] size, modification time and checksum of the building, site and measure files
+ *   long   start, end and step of the time axis shared by the readings
+ *   int    buildingCount
+ *   per building:
+ *     int    bID, name length, name bytes in UTF-8
+ *     int    footprint, perimeter
+ *     double area, centroid latitude, centroid longitude
+ *     int    outline length, then a latitude and longitude per point
+ *     int    siteCount
+ *     per site:
+ *       int    siteID, buildingID
+ *       long   start, step
+ *       int    slots
+ *       ...    padding up to a multiple of 8 bytes
+ *       double[slots] readings, NaN where missing
+ * </pre>
+ */
+public class CampusCache {
+  static final int MAGIC = 0x50574343;
+  static final int VERSION = 4;
+  private static final int SOURCES = 3;
+  private static final int KEY_OFFSET = 8;
+  private static final int KEY_SIZE = 24;
+
+  /**
+   * Returns the name of the cache that belongs to the given building file, which is kept in the
+   * same directory
+   *
+   * @param buildingName the name of the building csv file
+   * @return the name of the cache file
+   */
+  public static String cacheName(String buildingName) {
+    Objects.requireNonNull(buildingName);
+    File parent = new File(buildingName).getAbsoluteFile().getParentFile();
+    return new File(parent, "campus.cache").getPath();
+  }
+
+  /**
+   * Builds the buildings from the cache of the given files if it is still valid, and otherwise
+   * from the files themselves, writing a new cache for the next time.
+   *
+   * @return the list of buildings
+   * @throws IOException if the files cannot be read
+   */
+  public static List<Building> build(String buildingName, String siteName, String measureName)
+          throws IOException {
+    String cacheName = cacheName(buildingName);
+    try {
+      List<Building> cached = load(cacheName, buildingName, siteName, measureName);
+      if (cached != null) {
+        return cached;
+      }
+    } catch (IOException e) {
+      System.out.println("Error in reading the campus cache !!!");
+      e.printStackTrace();
+    }
+    long[][] key = key(buildingName, siteName, measureName);
+    List<Building> buildings = CsvReader.build(buildingName, siteName, measureName);
+    try {
+      write(cacheName, key, CsvReader.readMeasureAxis(measureName), buildings);
+    } catch (IOException e) {
+      System.out.println("Error in writing the campus cache !!!");
+      e.printStackTrace();
+    }
+    return buildings;
+  }
+
+  /**
+   * Loads the buildings from the given cache if it was built from the given files as they are
+   * now. If a file was only touched, its new modification time is recorded in the cache.
+   *
+   * @param cacheName    the cache file
+   * @param buildingName the building csv file
+   * @param siteName     the site csv file
+   * @param measureName  the measure csv file
+   * @return the buildings, or null if there is no cache or it is stale
+   * @throws IOException if the cache cannot be read
+   */
+  public static List<Building> load(String cacheName, String buildingName, String siteName,
+                                    String measureName) throws IOException {
+    Objects.requireNonNull(cacheName);
+    File cache = new File(cacheName);
+    if (!cache.isFile() || cache.length() > Integer.MAX_VALUE) {
+      return null;
+    }
+    String[] sources = sources(buildingName, siteName, measureName);
+    List<Building> buildings;
+    long[] modified = new long[SOURCES];
+    boolean touched = false;
+    try (RandomAccessFile file = new RandomAccessFile(cache, "r");
+         FileChannel channel = file.getChannel()) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < KEY_OFFSET + SOURCES * KEY_SIZE
+              || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        return null;
+      }
+      for (int i = 0; i < SOURCES; i++) {
+        File source = new File(sources[i]);
+        long size = buffer.getLong();
+        long time = buffer.getLong();
+        long checksum = buffer.getLong();
+        modified[i] = source.lastModified();
+        if (size != length(source)) {
+          return null;
+        }
+        if (time != modified[i]) {
+          if (checksum != checksum(source)) {
+            return null;
+          }
+          touched = true;
+        }
+      }
+      try {
+        buildings = read(buffer);
+      } catch (RuntimeException e) {
+        throw new IOException(cacheName + " is corrupt", e);
+      }
+    }
+    if (touched) {
+      try (RandomAccessFile file = new RandomAccessFile(cache, "rw")) {
+        for (int i = 0; i < SOURCES; i++) {
+          file.seek(KEY_OFFSET + i * KEY_SIZE + 8);
+          file.writeLong(modified[i]);
+        }
+      }
+    }
+    return buildings;
+  }
+
+  /**
+   * Writes the given buildings into a cache keyed by the given files as they are now
+   *
+   * @param cacheName    the cache file
+   * @param buildingName the building csv file
+   * @param siteName     the site csv file
+   * @param measureName  the measure csv file
+   * @param axis         the time axis of the readings in the measure file
+   * @param buildings    the buildings built from the files
+   * @throws IOException if the cache or the files cannot be accessed
+   */
+  public static void write(String cacheName, String buildingName, String siteName,
+                           String measureName, TimeAxis axis, List<Building> buildings)
+          throws IOException {
+    write(cacheName, key(buildingName, siteName, measureName), axis, buildings);
+  }
+
+  /**
+   * Writes the given buildings under the given key. The cache is written next to the old one and
+   * then moved over it, so a reader never sees half of a cache.
+   */
+  static void write(String cacheName, long[][] key, TimeAxis axis, List<Building> buildings)
+          throws IOException {
+    Objects.requireNonNull(cacheName);
+    Objects.requireNonNull(axis);
+    Objects.requireNonNull(buildings);
+    File temporary = new File(cacheName + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(temporary), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      for (long[] source : key) {
+        for (long value : source) {
+          out.writeLong(value);
+        }
+      }
+      out.writeLong(axis.start());
+      out.writeLong(axis.end());
+      out.writeLong(axis.step());
+      out.writeInt(buildings.size());
+      for (Building b : buildings) {
+        byte[] name = b.name().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.buildingID());
+        out.writeInt(name.length);
+        out.write(name);
+        out.writeInt(b.footprint());
+        out.writeInt(b.perimeter());
+        out.writeDouble(b.area());
+        out.writeDouble(b.centroid().lat());
+        out.writeDouble(b.centroid().longitude());
+        PackedPolygon outline = b.packedOutline();
+        out.writeInt(outline.size());
+        for (int p = 0; p < outline.size(); p++) {
+          out.writeDouble(outline.lat(p));
+          out.writeDouble(outline.longitude(p));
+        }
+        out.writeInt(b.sites().length);
+        for (Site s : b.sites()) {
+          TimeSeries series = s.series();
+          out.writeInt(s.siteID());
+          out.writeInt(s.buildingID());
+          out.writeLong(series.start());
+          out.writeLong(series.step());
+          out.writeInt(series.size());
+          while (out.size() % 8 != 0) {
+            out.writeByte(0);
+          }
+          for (int slot = 0; slot < series.size(); slot++) {
+            out.writeDouble(series.isSet(slot) ? series.get(slot) : Double.NaN);
+          }
+        }
+      }
+    }
+    Files.move(temporary.toPath(), new File(cacheName).toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Reads the buildings that follow the key. The series are views of the buffer.
+   */
+  private static List<Building> read(ByteBuffer buffer) {
+    TimeAxis axis = new TimeAxis(buffer.getLong(), buffer.getLong(), buffer.getLong());
+    int count = buffer.getInt();
+    List<Building> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      BuildingBuilder b = new BuildingBuilder().axis(axis).bID(buffer.getInt());
+      byte[] name = new byte[buffer.getInt()];
+      buffer.get(name);
+      b.name(new String(name, StandardCharsets.UTF_8))
+              .footprint(buffer.getInt())
+              .perimeter(buffer.getInt())
+              .area(buffer.getDouble())
+              .centroid(new LatLong(buffer.getDouble(), buffer.getDouble()));
+      double[] outline = new double[buffer.getInt() * 2];
+      buffer.asDoubleBuffer().get(outline);
+      buffer.position(buffer.position() + outline.length * 8);
+      Site[] sites = new Site[buffer.getInt()];
+      for (int s = 0; s < sites.length; s++) {
+        int siteID = buffer.getInt();
+        int buildingID = buffer.getInt();
+        long start = buffer.getLong();
+        long step = buffer.getLong();
+        int slots = buffer.getInt();
+        buffer.position((buffer.position() + 7) & ~7);
+        ByteBuffer block = buffer.slice();
+        block.limit(slots * 8);
+        buffer.position(buffer.position() + slots * 8);
+        sites[s] = new SiteImpl(siteID, buildingID,
+                new MappedTimeSeries(start, step, block.asDoubleBuffer()));
+      }
+      result.add(b.outline(new PackedPolygon(outline)).sites(sites).build());
+    }
+    return result;
+  }
+
+  /**
+   * Returns the size, modification time and checksum of each of the files the buildings are
+   * built from. The binary measure file stands in for the measure csv file while it is current.
+   */
+  static long[][] key(String buildingName, String siteName, String measureName)
+          throws IOException {
+    String[] sources = sources(buildingName, siteName, measureName);
+    long[][] key = new long[SOURCES][];
+    for (int i = 0; i < SOURCES; i++) {
+      File source = new File(sources[i]);
+      key[i] = new long[] {length(source), source.lastModified(), checksum(source)};
+    }
+    return key;
+  }
+
+  private static String[] sources(String buildingName, String siteName, String measureName) {
+    Objects.requireNonNull(buildingName);
+    Objects.requireNonNull(siteName);
+    Objects.requireNonNull(measureName);
+    String measures = MeasureFile.isCurrent(measureName)
+            ? MeasureFile.binaryName(measureName) : measureName;
+    return new String[] {buildingName, siteName, measures};
+  }
+
+  private static long length(File file) {
+    return file.isFile() ? file.length() : -1;
+  }
+
+  /**
+   * Returns the CRC-32 of the whole file, read through a mapping, or 0 if there is no file
+   */
+  private static long checksum(File file) throws IOException {
+    if (!file.isFile()) {
+      return 0;
+    }
+    CRC32 crc = new CRC32();
+    try (RandomAccessFile in = new RandomAccessFile(file, "r");
+         FileChannel channel = in.getChannel()) {
+      long size = channel.size();
+      for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+        crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(Integer.MAX_VALUE, size - position)));
+      }
+    }
+    return crc.getValue();
+  }
+}
@@ -0,0 +1,207 @@
+package Visual;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the csv files in the background, publishing what is ready as soon as it is ready. The
+ * outlines are published as soon as the building file is parsed, while the site and measure
+ * files are read at the same time. The fully linked buildings are published once all three
+ * are done. If the campus cache of the files is still valid, everything is published at once
+ * from the cache, and otherwise a new cache is written once the files have been read. The
+ * readings can be kept compressed, which takes several times less memory for long histories.
+ */
+public class CampusLoader {
+  private final String buildingName;
+  private final String siteName;
+  private final String measureName;
+  private final AtomicLong measureProgress = new AtomicLong();
+  private volatile long measureSize = 1;
+  private volatile boolean compress;
+  private volatile List<Building> outlines;
+  private volatile List<Building> buildings;
+  private volatile Throwable error;
+
+  /**
+   * Creates a loader of the given files
+   *
+   * @param buildingName the building file
+   * @param siteName     the site file
+   * @param measureName  the measure file
+   */
+  public CampusLoader(String buildingName, String siteName, String measureName) {
+    this.buildingName = Objects.requireNonNull(buildingName);
+    this.siteName = Objects.requireNonNull(siteName);
+    this.measureName = Objects.requireNonNull(measureName);
+  }
+
+  /**
+   * Keeps the readings of the loaded sites and buildings compressed, so that they are read only.
+   * Must be called before the loader is started.
+   *
+   * @return this loader
+   */
+  public CampusLoader compress() {
+    compress = true;
+    return this;
+  }
+
+  /**
+   * Starts loading on background threads
+   */
+  public void start() {
+    final ExecutorService pool = Executors.newFixedThreadPool(3, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Campus loader");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    pool.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          load(pool);
+        } catch (Throwable t) {
+          error = t;
+        } finally {
+          pool.shutdown();
+        }
+      }
+    });
+  }
+
+  /**
+   * Reads the three files, the site and measure files at the same time as the building file,
+   * unless they can be read from the cache
+   */
+  private void load(ExecutorService pool) throws Exception {
+    String cacheName = CampusCache.cacheName(buildingName);
+    try {
+      List<Building> cached = CampusCache.load(cacheName, buildingName, siteName, measureName);
+      if (cached != null) {
+        outlines = Collections.unmodifiableList(compress ? compress(cached) : cached);
+        buildings = outlines;
+        return;
+      }
+    } catch (IOException e) {
+      System.out.println("Error in reading the campus cache !!!");
+      e.printStackTrace();
+    }
+    final TimeAxis axis = CsvReader.readMeasureAxis(measureName);
+    Future<ArrayList<Site>> sites = pool.submit(new Callable<ArrayList<Site>>() {
+      @Override
+      public ArrayList<Site> call() throws IOException {
+        return CsvReader.readSiteFile(siteName, axis);
+      }
+    });
+    Future<TimeSeries[]> series = pool.submit(new Callable<TimeSeries[]>() {
+      @Override
+      public TimeSeries[] call() throws IOException {
+        if (MeasureFile.isCurrent(measureName)) {
+          return MeasureFile.map(MeasureFile.binaryName(measureName));
+        }
+        measureSize = Math.max(1, new File(measureName).length());
+        return CsvReader.readMeasureColumns(measureName, axis, measureProgress);
+      }
+    });
+    ArrayList<BuildingBuilder> builders = CsvReader.readBuildingFile(buildingName, axis);
+    ArrayList<Building> unlinked = new ArrayList<>(builders.size());
+    for (BuildingBuilder builder : builders) {
+      unlinked.add(builder.sites(new Site[0]).build());
+    }
+    outlines = Collections.unmodifiableList(unlinked);
+    // The key reads through every file, so it waits until the outlines are shown
+    long[][] key = CampusCache.key(buildingName, siteName, measureName);
+    ArrayList<Site> linkedSites;
+    try {
+      linkedSites = CsvReader.attachSeries(sites.get(), series.get());
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+    CsvReader.linkSitesToBuildings(linkedSites, builders);
+    ArrayList<Building> result = new ArrayList<>(builders.size());
+    for (BuildingBuilder builder : builders) {
+      result.add(builder.build());
+    }
+    buildings = Collections.unmodifiableList(compress ? compress(result) : result);
+    try {
+      CampusCache.write(cacheName, key, axis, result);
+    } catch (IOException e) {
+      System.out.println("Error in writing the campus cache !!!");
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Copies the given buildings onto sites whose readings are compressed, along with the mean
+   * wattage of each building
+   */
+  private static List<Building> compress(List<Building> loaded) {
+    List<Building> result = new ArrayList<>(loaded.size());
+    for (Building b : loaded) {
+      Site[] sites = new Site[b.sites().length];
+      for (int i = 0; i < sites.length; i++) {
+        Site s = b.sites()[i];
+        sites[i] = new SiteImpl(s.siteID(), s.buildingID(),
+                CompressedTimeSeries.of(s.series()));
+      }
+      result.add(new BuildingImpl(b, sites, CompressedTimeSeries.of(b.series())));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the buildings with their outlines but without any sites, once the building file
+   * has been read
+   *
+   * @return the unlinked buildings, or null if they are not ready yet
+   */
+  public List<Building> outlines() {
+    return outlines;
+  }
+
+  /**
+   * Returns the fully linked buildings, in the same order as the outlines, once all of the
+   * files have been read
+   *
+   * @return the buildings, or null if they are not ready yet
+   */
+  public List<Building> buildings() {
+    return buildings;
+  }
+
+  /**
+   * Returns how much of the loading is done, where the measure file makes up most of the work
+   *
+   * @return the progress between 0 and 1
+   */
+  public double progress() {
+    if (buildings != null) {
+      return 1;
+    }
+    double measures = Math.min(1, measureProgress.get() / (double) measureSize);
+    return (outlines != null ? 0.1 : 0) + 0.85 * measures;
+  }
+
+  /**
+   * Returns the error that stopped the loading
+   *
+   * @return the error, or null if there has not been one
+   */
+  public Throwable error() {
+    return error;
+  }
+}
@@ -0,0 +1,617 @@
+package Visual;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.InetAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the readings of a loaded campus as JSON over HTTP, to this machine only, so that other
+ * tools can query the campus without loading the csv files themselves. Buildings never change,
+ * so requests are answered on several threads at once without locking. Every response is written
+ * straight to the connection as it is computed.
+ *
+ * <p>The endpoints, all answered for GET requests, are:
+ * <ul>
+ * <li>{@code /axis}: the times readings were taken at</li>
+ * <li>{@code /buildings}: every building, without its readings</li>
+ * <li>{@code /building?id=}: one building, without its readings</li>
+ * <li>{@code /wattage?building=|site=&time=}: the wattage at one or more comma separated
+ * times</li>
+ * <li>{@code /range?building=|site=&from=&to=}: the energy, average, peak, trough and uptime
+ * over [from, to)</li>
+ * <li>{@code /snapshot?time=}: the wattage, rank and state of every building at a time</li>
+ * </ul>
+ * Times are unix times. A malformed query is answered with 400 and an unknown path, building or
+ * site with 404, along with an error object.
+ *
+ * <p>Requests are answered on a thread per core, with a bounded queue of waiting requests. Once
+ * the queue is full, the thread accepting connections answers the next request itself, which
+ * holds back new connections until the queue drains. The JDK's server sends the headers of a
+ * response apart from its body, so small responses are held back by the client's delayed
+ * acknowledgement unless the process is started with {@code -Dsun.net.httpserver.nodelay=true},
+ * which {@link #main} sets.
+ */
+public class CampusServer {
+  /**
+   * The most times that can be asked for in one wattage request
+   */
+  private static final int MAX_TIMES = 4096;
+
+  /**
+   * The most requests that wait for a thread
+   */
+  private static final int QUEUE = 1024;
+
+  private final Campus campus;
+  private HttpServer server;
+  private ExecutorService pool;
+
+  /**
+   * Creates a server for the given campus. A live campus may keep recording while it runs, in
+   * which case an answer may mix readings from just before and just after one was recorded.
+   *
+   * @param campus the campus to serve
+   */
+  public CampusServer(Campus campus) {
+    this.campus = Objects.requireNonNull(campus, "Campus not Initialized");
+  }
+
+  /**
+   * Starts answering requests on the given port of the loopback address
+   *
+   * @param port the port to listen on, or 0 for any free port
+   * @throws IOException           if the port cannot be bound
+   * @throws IllegalStateException if the server has already been started
+   */
+  public synchronized void start(int port) throws IOException {
+    if (server != null) {
+      throw new IllegalStateException("Server already started");
+    }
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/", new Endpoint() {
+      @Override
+      void answer(Map<String, String> query, JsonWriter json) throws IOException {
+        throw new BadRequest(404, "No such endpoint");
+      }
+    });
+    server.createContext("/axis", new Endpoint() {
+      @Override
+      void answer(Map<String, String> query, JsonWriter json) throws IOException {
+        writeAxis(json);
+      }
+    });
+    server.createContext("/buildings", new Endpoint() {
+      @Override
+      void answer(Map<String, String> query, JsonWriter json) throws IOException {
+        json.beginArray();
+        for (Building b : campus.buildings()) {
+          writeBuilding(b, json);
+        }
+        json.endArray();
+      }
+    });
+    server.createContext("/building", new Endpoint() {
+      @Override
+      void answer(Map<String, String> query, JsonWriter json) throws IOException {
+        writeBuilding(building(query, "id"), json);
+      }
+    });
+    server.createContext("/wattage", new Endpoint() {
+      @Override
+      void answer(Map<String, String> query, JsonWriter json) throws IOException {
+        writeWattage(query, json);
+      }
+    });
+    server.createContext("/range", new Endpoint() {
+      @Override
+      void answer(Map<String, String> query, JsonWriter json) throws IOException {
+        writeRange(query, json);
+      }
+    });
+    server.createContext("/snapshot", new Endpoint() {
+      @Override
+      void answer(Map<String, String> query, JsonWriter json) throws IOException {
+        writeSnapshot(campus.snapshot(time(query, "time")), json);
+      }
+    });
+    ThreadFactory factory = new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "Campus server");
+        t.setDaemon(true);
+        return t;
+      }
+    };
+    int threads = Runtime.getRuntime().availableProcessors();
+    pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(QUEUE), factory,
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    server.setExecutor(pool);
+    server.start();
+  }
+
+  /**
+   * Returns the port the server is listening on
+   *
+   * @return the port
+   * @throws IllegalStateException if the server has not been started
+   */
+  public synchronized int port() {
+    if (server == null) {
+      throw new IllegalStateException("Server not started");
+    }
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Stops answering requests, waiting up to the given number of seconds for the ones underway
+   *
+   * @param delay the most seconds to wait
+   */
+  public synchronized void stop(int delay) {
+    if (server != null) {
+      server.stop(delay);
+      pool.shutdown();
+      server = null;
+      pool = null;
+    }
+  }
+
+  private void writeAxis(JsonWriter json) throws IOException {
+    TimeAxis axis = campus.axis();
+    json.beginObject()
+            .name("start").value(axis.start())
+            .name("end").value(axis.end())
+            .name("step").value(axis.step())
+            .endObject();
+  }
+
+  private void writeBuilding(Building b, JsonWriter json) throws IOException {
+    LatLong centroid = b.centroid();
+    json.beginObject()
+            .name("id").value(b.buildingID())
+            .name("name").value(b.name())
+            .name("footprint").value(b.footprint())
+            .name("perimeter").value(b.perimeter())
+            .name("area").value(b.area())
+            // The coordinates of LatLong are stored the other way around
+            .name("latitude").value(centroid.longitude())
+            .name("longitude").value(centroid.lat())
+            .name("sites").beginArray();
+    for (Site s : b.sites()) {
+      json.value(s.siteID());
+    }
+    json.endArray().endObject();
+  }
+
+  private void writeWattage(Map<String, String> query, JsonWriter json) throws IOException {
+    String[] cells = required(query, "time").split(",");
+    if (cells.length > MAX_TIMES) {
+      throw new BadRequest(400, "At most " + Integer.toString(MAX_TIMES) + " times");
+    }
+    long[] times = new long[cells.length];
+    for (int i = 0; i < cells.length; i++) {
+      times[i] = parseTime(cells[i]);
+    }
+    double[] watts = new double[times.length];
+    Building b = query.containsKey("site") ? null : building(query, "building");
+    if (b != null) {
+      b.wattage(times, watts);
+    } else {
+      site(query).wattage(times, watts);
+    }
+    json.beginArray();
+    for (int i = 0; i < times.length; i++) {
+      json.beginObject()
+              .name("time").value(times[i])
+              .name("wattage").value(watts[i])
+              .endObject();
+    }
+    json.endArray();
+  }
+
+  private void writeRange(Map<String, String> query, JsonWriter json) throws IOException {
+    long from = time(query, "from");
+    long to = time(query, "to");
+    double energy;
+    double average;
+    double peak;
+    double trough;
+    double uptime;
+    // Everything is computed before the response is started, so that an empty range is a 400
+    if (query.containsKey("site")) {
+      Site s = site(query);
+      energy = s.energy(from, to);
+      average = s.averageWattage(from, to);
+      peak = s.peak(from, to);
+      trough = s.trough(from, to);
+      uptime = s.outages().uptime(from, to);
+    } else {
+      Building b = building(query, "building");
+      energy = b.energy(from, to);
+      average = b.averageWattage(from, to);
+      peak = b.peak(from, to);
+      trough = b.trough(from, to);
+      uptime = b.outages().uptime(from, to);
+    }
+    json.beginObject()
+            .name("from").value(from)
+            .name("to").value(to)
+            .name("energy").value(energy)
+            .name("average").value(average)
+            .name("peak").value(peak)
+            .name("trough").value(trough)
+            .name("uptime").value(uptime)
+            .endObject();
+  }
+
+  private void writeSnapshot(CampusSnapshot snapshot, JsonWriter json) throws IOException {
+    json.beginObject()
+            .name("time").value(snapshot.time())
+            .name("buildings").beginArray();
+    for (int i = 0; i < snapshot.size(); i++) {
+      json.beginObject()
+              .name("id").value(snapshot.buildingID(i))
+              .name("wattage").value(snapshot.wattage(i))
+              .name("rank").value(snapshot.rank(i))
+              .name("down").value(snapshot.isDown(i))
+              .endObject();
+    }
+    json.endArray().endObject();
+  }
+
+  private Building building(Map<String, String> query, String key) {
+    int id = parseID(required(query, key));
+    Building b = campus.building(id);
+    if (b == null) {
+      throw new BadRequest(404, "No such building: " + Integer.toString(id));
+    }
+    return b;
+  }
+
+  private Site site(Map<String, String> query) {
+    int id = parseID(required(query, "site"));
+    Site s = campus.site(id);
+    if (s == null) {
+      throw new BadRequest(404, "No such site: " + Integer.toString(id));
+    }
+    return s;
+  }
+
+  private static long time(Map<String, String> query, String key) {
+    return parseTime(required(query, key));
+  }
+
+  private static String required(Map<String, String> query, String key) {
+    String value = query.get(key);
+    if (value == null) {
+      throw new BadRequest(400, "Missing parameter: " + key);
+    }
+    return value;
+  }
+
+  private static long parseTime(String cell) {
+    try {
+      return Long.parseLong(cell.trim());
+    } catch (NumberFormatException e) {
+      throw new BadRequest(400, "Not a time: " + cell);
+    }
+  }
+
+  private static int parseID(String cell) {
+    try {
+      return Integer.parseInt(cell.trim());
+    } catch (NumberFormatException e) {
+      throw new BadRequest(400, "Not an id: " + cell);
+    }
+  }
+
+  /**
+   * Splits a raw query string into its decoded parameters. A repeated parameter keeps its last
+   * value.
+   */
+  private static Map<String, String> parseQuery(String raw) throws UnsupportedEncodingException {
+    Map<String, String> query = new HashMap<>();
+    if (raw == null || raw.isEmpty()) {
+      return query;
+    }
+    for (String pair : raw.split("&")) {
+      int eq = pair.indexOf('=');
+      String key = eq < 0 ? pair : pair.substring(0, eq);
+      String value = eq < 0 ? "" : pair.substring(eq + 1);
+      query.put(URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+    }
+    return query;
+  }
+
+  /**
+   * A query that cannot be answered, along with the status to answer it with
+   */
+  private static final class BadRequest extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    final int status;
+
+    BadRequest(int status, String message) {
+      super(message);
+      this.status = status;
+    }
+  }
+
+  /**
+   * Answers GET requests with JSON. The parameters are checked by the endpoint before the first
+   * byte is written, and the body is then streamed as it is written.
+   */
+  private abstract static class Endpoint implements HttpHandler {
+    abstract void answer(Map<String, String> query, JsonWriter json) throws IOException;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (!exchange.getRequestMethod().equals("GET")) {
+          exchange.getResponseHeaders().set("Allow", "GET");
+          fail(exchange, 405, "Only GET is supported");
+          return;
+        }
+        // Contexts match every path that starts with theirs, so anything longer is unknown
+        if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+          fail(exchange, 404, "No such endpoint");
+          return;
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        StreamedBody body = new StreamedBody(exchange, 200);
+        Writer out = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+        try {
+          answer(query, new JsonWriter(out));
+          out.flush();
+        } catch (RuntimeException e) {
+          if (body.started) {
+            throw e;
+          }
+          if (e instanceof BadRequest) {
+            fail(exchange, ((BadRequest) e).status, e.getMessage());
+          } else if (e instanceof IllegalArgumentException) {
+            fail(exchange, 400, e.getMessage());
+          } else {
+            fail(exchange, 500, "Internal error");
+            throw e;
+          }
+          return;
+        }
+        body.finish();
+      } catch (IOException | RuntimeException e) {
+        System.out.println("Error in CampusServer !!!");
+        e.printStackTrace();
+      } finally {
+        exchange.close();
+      }
+    }
+
+    private static void fail(HttpExchange exchange, int status, String message)
+            throws IOException {
+      StreamedBody body = new StreamedBody(exchange, status);
+      Writer out = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+      new JsonWriter(out).beginObject().name("error").value(message).endObject();
+      out.flush();
+      body.finish();
+    }
+  }
+
+  /**
+   * A buffer in front of the body of a response, which sends the headers once the buffer first
+   * fills, so that an endpoint can still fail before then. A body that fits in the buffer is sent
+   * whole with its length; a longer one is streamed in chunks.
+   */
+  private static final class StreamedBody extends OutputStream {
+    private static final int BUFFER = 8192;
+
+    private final HttpExchange exchange;
+    private final int status;
+    private final byte[] buffer = new byte[BUFFER];
+    private int length;
+    private OutputStream out;
+    boolean started;
+
+    StreamedBody(HttpExchange exchange, int status) {
+      this.exchange = exchange;
+      this.status = status;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int count) throws IOException {
+      while (count > 0) {
+        if (length == BUFFER) {
+          drain();
+        }
+        int n = Math.min(count, BUFFER - length);
+        System.arraycopy(bytes, offset, buffer, length, n);
+        length += n;
+        offset += n;
+        count -= n;
+      }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (length == BUFFER) {
+        drain();
+      }
+      buffer[length++] = (byte) b;
+    }
+
+    private void drain() throws IOException {
+      if (!started) {
+        started = true;
+        exchange.sendResponseHeaders(status, 0);
+        out = exchange.getResponseBody();
+      }
+      out.write(buffer, 0, length);
+      length = 0;
+    }
+
+    /**
+     * Sends whatever is left of the body and ends the response
+     */
+    void finish() throws IOException {
+      if (!started) {
+        started = true;
+        exchange.sendResponseHeaders(status, length);
+        out = exchange.getResponseBody();
+      }
+      out.write(buffer, 0, length);
+      length = 0;
+      out.close();
+    }
+  }
+
+  /**
+   * Writes JSON values one after another, placing the commas between them
+   */
+  private static final class JsonWriter {
+    private final Writer out;
+    // Set when the next value is the first in its object or array, or follows a name
+    private boolean first = true;
+
+    JsonWriter(Writer out) {
+      this.out = out;
+    }
+
+    JsonWriter beginObject() throws IOException {
+      separate();
+      out.write('{');
+      first = true;
+      return this;
+    }
+
+    JsonWriter endObject() throws IOException {
+      out.write('}');
+      first = false;
+      return this;
+    }
+
+    JsonWriter beginArray() throws IOException {
+      separate();
+      out.write('[');
+      first = true;
+      return this;
+    }
+
+    JsonWriter endArray() throws IOException {
+      out.write(']');
+      first = false;
+      return this;
+    }
+
+    JsonWriter name(String name) throws IOException {
+      separate();
+      string(name);
+      out.write(':');
+      first = true;
+      return this;
+    }
+
+    JsonWriter value(String value) throws IOException {
+      separate();
+      if (value == null) {
+        out.write("null");
+      } else {
+        string(value);
+      }
+      return this;
+    }
+
+    JsonWriter value(long value) throws IOException {
+      separate();
+      out.write(Long.toString(value));
+      return this;
+    }
+
+    /**
+     * Writes the given number, or null for NaN and the infinities, which JSON cannot hold
+     */
+    JsonWriter value(double value) throws IOException {
+      separate();
+      out.write(Double.isNaN(value) || Double.isInfinite(value)
+              ? "null" : Double.toString(value));
+      return this;
+    }
+
+    JsonWriter value(boolean value) throws IOException {
+      separate();
+      out.write(value ? "true" : "false");
+      return this;
+    }
+
+    private void separate() throws IOException {
+      if (!first) {
+        out.write(',');
+      }
+      first = false;
+    }
+
+    private void string(String s) throws IOException {
+      out.write('"');
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if (c == '"' || c == '\\') {
+          out.write('\\');
+          out.write(c);
+        } else if (c < 0x20) {
+          out.write(String.format("\\u%04x", (int) c));
+        } else {
+          out.write(c);
+        }
+      }
+      out.write('"');
+    }
+  }
+
+  /**
+   * Loads the campus from the given csv files and serves it until the process is stopped
+   *
+   * @param args the port, then optionally the building, site and measure files
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1 && args.length != 4) {
+      System.out.println("Usage: CampusServer <port> [building csv] [site csv] [measure csv]");
+      return;
+    }
+    int port = Integer.parseInt(args[0]);
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+    List<Building> buildings = args.length == 4
+            ? CsvReader.build(args[1], args[2], args[3])
+            : CsvReader.build("buildingDB.csv", "siteDB.csv", "measureDB_parallel.csv");
+    CampusServer server = new CampusServer(new Campus(buildings));
+    server.start(port);
+    System.out.println("Serving " + Integer.toString(buildings.size()) + " buildings on port "
+            + Integer.toString(server.port()));
+    // The request threads are daemons, so keep the process alive
+    try {
+      Thread.currentThread().join();
+    } catch (InterruptedException e) {
+      server.stop(0);
+    }
+  }
+}
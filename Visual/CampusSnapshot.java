@@ -0,0 +1,187 @@
+package Visual;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable view of a list of buildings at a single point in time. The wattage and rank of
+ * every building are read in one pass when the snapshot is taken, so sorting and rendering never
+ * have to go back to the buildings, and the buildings are never changed. Buildings are referred
+ * to by their index in the list the snapshot was taken of.
+ */
+public final class CampusSnapshot {
+  private final long time;
+  private final int[] buildingIDs;
+  private final double[] wattages;
+  private final boolean[] down;
+  private final int[] ranks;
+  private final int[] order;
+
+  private CampusSnapshot(long time, int[] buildingIDs, double[] wattages, boolean[] down,
+                         int[] ranks, int[] order) {
+    this.time = time;
+    this.buildingIDs = buildingIDs;
+    this.wattages = wattages;
+    this.down = down;
+    this.ranks = ranks;
+    this.order = order;
+  }
+
+  /**
+   * Takes a snapshot of the given buildings at the given time. The time is rounded to the
+   * nearest slot of the time axis the buildings share.
+   *
+   * @param buildings the buildings to take a snapshot of
+   * @param axis      the time axis of the buildings
+   * @param time      the unix time
+   * @return the snapshot
+   */
+  public static CampusSnapshot of(List<? extends Building> buildings, TimeAxis axis,
+                                  long time) {
+    Objects.requireNonNull(buildings, "Buildings not Initialized");
+    Objects.requireNonNull(axis, "Axis not Initialized");
+    long rounded = axis.round(time);
+    int count = buildings.size();
+    int[] buildingIDs = new int[count];
+    double[] wattages = new double[count];
+    boolean[] down = new boolean[count];
+    int[] order = new int[count];
+    for (int i = 0; i < count; i++) {
+      Building b = buildings.get(i);
+      buildingIDs[i] = b.buildingID();
+      wattages[i] = b.wattage(rounded);
+      down[i] = b.outages().isDownAt(rounded);
+      order[i] = i;
+    }
+    sort(order, new int[count], wattages, 0, count);
+    int[] ranks = new int[count];
+    for (int rank = 0; rank < count; rank++) {
+      ranks[order[rank]] = rank;
+    }
+    return new CampusSnapshot(rounded, buildingIDs, wattages, down, ranks, order);
+  }
+
+  /**
+   * Returns the time of the snapshot, rounded to the nearest reading
+   *
+   * @return the unix time
+   */
+  public long time() {
+    return time;
+  }
+
+  /**
+   * Returns the number of buildings in the snapshot
+   *
+   * @return the number of buildings
+   */
+  public int size() {
+    return buildingIDs.length;
+  }
+
+  /**
+   * Returns the id of the building at the given index
+   *
+   * @param index the index of the building
+   * @return the building id
+   */
+  public int buildingID(int index) {
+    return buildingIDs[index];
+  }
+
+  /**
+   * Returns the wattage of the building at the given index
+   *
+   * @param index the index of the building
+   * @return the wattage at the time of the snapshot
+   */
+  public double wattage(int index) {
+    return wattages[index];
+  }
+
+  /**
+   * Returns whether none of the meters of the building at the given index had a reading
+   *
+   * @param index the index of the building
+   * @return true if the building was down at the time of the snapshot
+   */
+  public boolean isDown(int index) {
+    return down[index];
+  }
+
+  /**
+   * Returns the rank of the building at the given index, where 0 is the building using the
+   * least power. Buildings using the same power are ranked by index.
+   *
+   * @param index the index of the building
+   * @return the rank
+   */
+  public int rank(int index) {
+    return ranks[index];
+  }
+
+  /**
+   * Returns the index of the building with the given rank
+   *
+   * @param rank the rank
+   * @return the index of the building
+   */
+  public int byRank(int rank) {
+    return order[rank];
+  }
+
+  /**
+   * Returns the index of the building with the given id
+   *
+   * @param buildingID the id of the building
+   * @return the index of the building, or -1 if it is not in the snapshot
+   */
+  public int indexOf(int buildingID) {
+    for (int i = 0; i < buildingIDs.length; i++) {
+      if (buildingIDs[i] == buildingID) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Orders two buildings the way they are ranked: by their wattage, and buildings using the same
+   * wattage by their index, so that every way of ranking gives ties the same ranks
+   *
+   * @param wattages the wattage of every building, by index
+   * @param a        the index of one building
+   * @param b        the index of the other building
+   * @return a negative number if a ranks below b, a positive one if above, or 0 if a is b
+   */
+  public static int compareRanks(double[] wattages, int a, int b) {
+    int result = Double.compare(wattages[a], wattages[b]);
+    return result != 0 ? result : Integer.compare(a, b);
+  }
+
+  /**
+   * Merge sorts [from, to) of the given indices by their rank
+   */
+  private static void sort(int[] order, int[] scratch, double[] wattages, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    sort(order, scratch, wattages, from, middle);
+    sort(order, scratch, wattages, middle, to);
+    if (compareRanks(wattages, order[middle - 1], order[middle]) <= 0) {
+      return;
+    }
+    System.arraycopy(order, from, scratch, from, to - from);
+    int left = from;
+    int right = middle;
+    for (int i = from; i < to; i++) {
+      if (right >= to || (left < middle
+              && compareRanks(wattages, scratch[left], scratch[right]) <= 0)) {
+        order[i] = scratch[left++];
+      } else {
+        order[i] = scratch[right++];
+      }
+    }
+  }
+}
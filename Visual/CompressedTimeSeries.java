@@ -0,0 +1,428 @@
+package Visual;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A read only time series that keeps its readings compressed in memory. The slots are cut into
+ * blocks, each of which is encoded on its own. Meters report a fixed number of decimal places,
+ * so a block whose readings are all decimals is stored as whole numbers above the least of
+ * them, packed at as few bits as the largest needs. Any other block is encoded by XORing every
+ * reading with the one before it, in the way of the Gorilla time series database, where a
+ * repeated reading costs a single bit. The offset of every block is kept, so reading a slot
+ * only decodes the block it is in, and a packed block is read without decoding at all.
+ */
+public class CompressedTimeSeries implements TimeSeries {
+  private static final int BLOCK_BITS = 7;
+  private static final int BLOCK = 1 << BLOCK_BITS;
+  private static final int XOR = 0;
+  private static final int PACKED = 1;
+  private static final int MAX_SCALE = 6;
+  // Powers of ten for the decimal places of a packed block
+  private static final double[] SCALES = {1, 10, 100, 1000, 10000, 100000, 1000000};
+
+  private final TimeAxis axis;
+  private final int size;
+  private final byte[] data;
+  // blockOffsets[b] is the index in data of the first byte of block b
+  private final int[] blockOffsets;
+  // The last block decoded, kept for reads of nearby slots
+  private volatile Decoded last;
+
+  private CompressedTimeSeries(TimeAxis axis, byte[] data, int[] blockOffsets) {
+    this.axis = axis;
+    this.size = axis.size();
+    this.data = data;
+    this.blockOffsets = blockOffsets;
+  }
+
+  /**
+   * Compresses a copy of the given series
+   *
+   * @param series the series to compress
+   * @return the compressed series
+   */
+  public static CompressedTimeSeries of(TimeSeries series) {
+    Objects.requireNonNull(series, "Series not Initialized");
+    int size = series.size();
+    int blocks = (size + BLOCK - 1) >> BLOCK_BITS;
+    int[] blockOffsets = new int[blocks];
+    double[] values = new double[BLOCK];
+    BitWriter out = new BitWriter(Math.max(16, size));
+    for (int b = 0; b < blocks; b++) {
+      int length = Math.min(BLOCK, size - (b << BLOCK_BITS));
+      for (int i = 0; i < length; i++) {
+        int slot = (b << BLOCK_BITS) + i;
+        values[i] = series.isSet(slot) ? series.get(slot) : Double.NaN;
+      }
+      blockOffsets[b] = out.align();
+      int scale = scaleOf(values, length);
+      if (scale >= 0) {
+        pack(out, values, length, scale);
+      } else {
+        out.write(XOR, 1);
+        encodeXor(out, values, length);
+      }
+    }
+    return new CompressedTimeSeries(series.axis(), out.toBytes(), blockOffsets);
+  }
+
+  /**
+   * Returns the fewest decimal places that every reading of the block has, or -1 if some
+   * reading has more than can be packed
+   */
+  private static int scaleOf(double[] values, int length) {
+    for (int scale = 0; scale <= MAX_SCALE; scale++) {
+      boolean exact = true;
+      for (int i = 0; i < length && exact; i++) {
+        double watt = values[i];
+        if (watt == watt) {
+          long scaled = (long) Math.rint(watt * SCALES[scale]);
+          exact = Math.abs(scaled) < (1L << 52) && Double.doubleToRawLongBits(
+                  scaled / SCALES[scale]) == Double.doubleToRawLongBits(watt);
+        }
+      }
+      if (exact) {
+        return scale;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Writes the block as whole numbers of the given decimal places above the least of them. The
+   * number 0 marks a slot without a reading, so the least reading is written as 1.
+   */
+  private static void pack(BitWriter out, double[] values, int length, int scale) {
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int i = 0; i < length; i++) {
+      if (values[i] == values[i]) {
+        long scaled = (long) Math.rint(values[i] * SCALES[scale]);
+        min = Math.min(min, scaled);
+        max = Math.max(max, scaled);
+      }
+    }
+    if (min > max) {
+      min = max = 0;
+    }
+    int width = 64 - Long.numberOfLeadingZeros(max - min + 1);
+    out.write(PACKED, 1);
+    out.write(scale, 3);
+    out.write(width, 6);
+    writeLong(out, min - 1, 64);
+    for (int i = 0; i < length; i++) {
+      long code = values[i] == values[i]
+              ? (long) Math.rint(values[i] * SCALES[scale]) - min + 1 : 0;
+      writeLong(out, code, width);
+    }
+  }
+
+  /**
+   * Writes the block as its first reading followed by the bits that changed from each reading
+   * to the next
+   */
+  private static void encodeXor(BitWriter out, double[] values, int length) {
+    long previous = Double.doubleToRawLongBits(values[0]);
+    writeLong(out, previous, 64);
+    int previousLeading = -1;
+    int previousTrailing = 0;
+    for (int i = 1; i < length; i++) {
+      long bits = Double.doubleToRawLongBits(values[i]);
+      long xor = bits ^ previous;
+      if (xor == 0) {
+        out.write(0, 1);
+      } else {
+        int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading >= 0 && leading >= previousLeading
+                && trailing >= previousTrailing) {
+          out.write(2, 2);
+          writeLong(out, xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+        } else {
+          int meaningful = 64 - leading - trailing;
+          out.write(3, 2);
+          out.write(leading, 5);
+          out.write(meaningful - 1, 6);
+          writeLong(out, xor >>> trailing, meaningful);
+          previousLeading = leading;
+          previousTrailing = trailing;
+        }
+      }
+      previous = bits;
+    }
+  }
+
+  /**
+   * Returns the number of bytes the readings take up once compressed, not counting the offsets
+   * of the blocks
+   *
+   * @return the compressed size
+   */
+  public int compressedBytes() {
+    return data.length;
+  }
+
+  @Override
+  public TimeAxis axis() {
+    return axis;
+  }
+
+  @Override
+  public long start() {
+    return axis.start();
+  }
+
+  @Override
+  public long step() {
+    return axis.step();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int slot(long time) {
+    return axis.slot(time);
+  }
+
+  @Override
+  public long time(int slot) {
+    return axis.time(slot);
+  }
+
+  @Override
+  public double get(int slot) {
+    double watt = raw(slot);
+    return watt == watt ? watt : 0;
+  }
+
+  @Override
+  public boolean isSet(int slot) {
+    double watt = raw(slot);
+    return watt == watt;
+  }
+
+  @Override
+  public void read(int from, double[] dest, int offset, int length) {
+    copy(from, dest, offset, length);
+    for (int i = offset; i < offset + length; i++) {
+      if (dest[i] != dest[i]) {
+        dest[i] = 0;
+      }
+    }
+  }
+
+  /**
+   * Returns a read only view of the slots in [from, to). The readings have to be decoded, so the
+   * view is always a copy.
+   */
+  @Override
+  public DoubleBuffer view(int from, int to) {
+    if (from < 0 || from > to || to > size) {
+      throw new IndexOutOfBoundsException("No such range: " + Integer.toString(from) + ", "
+              + Integer.toString(to));
+    }
+    double[] values = new double[to - from];
+    copy(from, values, 0, values.length);
+    return DoubleBuffer.wrap(values).asReadOnlyBuffer();
+  }
+
+  /**
+   * Decodes the slots [from, from + length) into dest, block by block, with NaN where unset
+   */
+  private void copy(int from, double[] dest, int offset, int length) {
+    if (from < 0 || length < 0 || from + length > size) {
+      throw new IndexOutOfBoundsException("No such range: " + Integer.toString(from) + ", "
+              + Integer.toString(length));
+    }
+    int slot = from;
+    while (slot < from + length) {
+      double[] block = block(slot >> BLOCK_BITS);
+      int within = slot & (BLOCK - 1);
+      int count = Math.min(block.length - within, from + length - slot);
+      System.arraycopy(block, within, dest, offset + slot - from, count);
+      slot += count;
+    }
+  }
+
+  /**
+   * Returns the reading in the slot, or NaN if unset. A packed slot is read where it lies.
+   */
+  private double raw(int slot) {
+    checkSlot(slot);
+    int b = slot >> BLOCK_BITS;
+    Decoded decoded = last;
+    if (decoded != null && decoded.block == b) {
+      return decoded.values[slot & (BLOCK - 1)];
+    }
+    BitReader in = new BitReader(data, blockOffsets[b]);
+    if (in.read(1) != PACKED) {
+      return block(b)[slot & (BLOCK - 1)];
+    }
+    double scale = SCALES[(int) in.read(3)];
+    int width = (int) in.read(6);
+    long base = readLong(in, 64);
+    in.skip((slot & (BLOCK - 1)) * width);
+    long code = readLong(in, width);
+    return code == 0 ? Double.NaN : (base + code) / scale;
+  }
+
+  /**
+   * Returns the decoded readings of the given block, decoding it unless it was the last one
+   */
+  private double[] block(int b) {
+    Decoded decoded = last;
+    if (decoded != null && decoded.block == b) {
+      return decoded.values;
+    }
+    double[] values = new double[Math.min(BLOCK, size - (b << BLOCK_BITS))];
+    BitReader in = new BitReader(data, blockOffsets[b]);
+    if (in.read(1) == PACKED) {
+      double scale = SCALES[(int) in.read(3)];
+      int width = (int) in.read(6);
+      long base = readLong(in, 64);
+      for (int i = 0; i < values.length; i++) {
+        long code = readLong(in, width);
+        values[i] = code == 0 ? Double.NaN : (base + code) / scale;
+      }
+    } else {
+      long previous = readLong(in, 64);
+      values[0] = Double.longBitsToDouble(previous);
+      int leading = 0;
+      int trailing = 0;
+      for (int i = 1; i < values.length; i++) {
+        if (in.read(1) != 0) {
+          if (in.read(1) != 0) {
+            leading = (int) in.read(5);
+            trailing = 64 - leading - ((int) in.read(6) + 1);
+          }
+          previous ^= readLong(in, 64 - leading - trailing) << trailing;
+        }
+        values[i] = Double.longBitsToDouble(previous);
+      }
+    }
+    last = new Decoded(b, values);
+    return values;
+  }
+
+  private void checkSlot(int slot) {
+    if (slot < 0 || slot >= size) {
+      throw new IndexOutOfBoundsException("No such slot: " + Integer.toString(slot));
+    }
+  }
+
+  private static void writeLong(BitWriter out, long value, int bits) {
+    if (bits > 32) {
+      out.write(value >>> 32, bits - 32);
+      out.write(value, 32);
+    } else {
+      out.write(value, bits);
+    }
+  }
+
+  private static long readLong(BitReader in, int bits) {
+    if (bits > 32) {
+      long high = in.read(bits - 32);
+      return (high << 32) | in.read(32);
+    }
+    return in.read(bits);
+  }
+
+  /**
+   * A decoded block, published whole so that readers on other threads see all of it
+   */
+  private static final class Decoded {
+    final int block;
+    final double[] values;
+
+    Decoded(int block, double[] values) {
+      this.block = block;
+      this.values = values;
+    }
+  }
+
+  /**
+   * Appends bits to a growing array of bytes, most significant bit first
+   */
+  private static final class BitWriter {
+    private byte[] bytes;
+    private int length;
+    private long pending;
+    private int pendingBits;
+
+    BitWriter(int capacity) {
+      bytes = new byte[capacity];
+    }
+
+    /**
+     * Writes the lowest bits of the value, at most 32 of them
+     */
+    void write(long value, int bits) {
+      pending = (pending << bits) | (value & ((1L << bits) - 1));
+      pendingBits += bits;
+      while (pendingBits >= 8) {
+        pendingBits -= 8;
+        put((byte) (pending >>> pendingBits));
+      }
+    }
+
+    /**
+     * Pads the last byte with zeros and returns the index of the next byte
+     */
+    int align() {
+      if (pendingBits > 0) {
+        put((byte) (pending << (8 - pendingBits)));
+        pendingBits = 0;
+      }
+      return length;
+    }
+
+    byte[] toBytes() {
+      align();
+      return Arrays.copyOf(bytes, length);
+    }
+
+    private void put(byte b) {
+      if (length == bytes.length) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      bytes[length++] = b;
+    }
+  }
+
+  /**
+   * Reads bits out of an array of bytes, most significant bit first
+   */
+  private static final class BitReader {
+    private final byte[] bytes;
+    // The index of the next bit to read
+    private long position;
+
+    BitReader(byte[] bytes, int offset) {
+      this.bytes = bytes;
+      this.position = (long) offset << 3;
+    }
+
+    /**
+     * Reads the given number of bits, at most 32 of them
+     */
+    long read(int bits) {
+      int index = (int) (position >>> 3);
+      int skipped = (int) (position & 7);
+      long window = 0;
+      for (int i = index; i < index + 5; i++) {
+        window = (window << 8) | (i < bytes.length ? bytes[i] & 0xFF : 0);
+      }
+      position += bits;
+      return (window >>> (40 - skipped - bits)) & ((1L << bits) - 1);
+    }
+
+    void skip(int bits) {
+      position += bits;
+    }
+  }
+}
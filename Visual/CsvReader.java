@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class to read the csv files needed to populate the buildings
@@ -15,9 +16,11 @@ public class CsvReader {
    * called first out of the reading files
    *
    * @param fileName the name of the file
+   * @param axis     the time axis shared by the readings of the campus
    * @return the list of builders
    */
-  static ArrayList<BuildingBuilder> readBuildingFile(String fileName) throws IOException {
+  static ArrayList<BuildingBuilder> readBuildingFile(String fileName, TimeAxis axis)
+          throws IOException {
     int bID = 0;
     int name = 1;
     int perimeter = 5;
@@ -34,15 +37,28 @@ public class CsvReader {
       fileReader.readLine();
       String line = fileReader.readLine();
       // Read through the file until there are no more lines to read
+      CsvTokenizer cells = new CsvTokenizer();
       while (line != null) {
-        String[] cells = splitIgnoreGiven(line, '"');
-        if (cells.length > 0) {
-          BuildingBuilder b = new BuildingBuilder();
-          b.bID(Integer.valueOf(cells[bID])).name(cells[name]).perimeter(Integer.valueOf(cells[perimeter]));
-          b.area(Double.valueOf(cells[area])).footprint(Integer.valueOf(cells[footprint]));
-          b.centroid(LatLong.valueOf(cells[centroid].substring(1, cells[centroid].length() - 1)));
-          b.outline(LatLong.valueOfAll(cells[outline].substring(2, cells[outline].length() - 2)));
-          b.currentTime(1399451400);
+        if (line.length() > 0) {
+          BuildingBuilder b = new BuildingBuilder().axis(axis);
+          cells.reset(line);
+          for (int column = 0; cells.next(); column++) {
+            if (column == bID) {
+              b.bID(cells.parseInt());
+            } else if (column == name) {
+              b.name(cells.string());
+            } else if (column == perimeter) {
+              b.perimeter(cells.parseInt());
+            } else if (column == area) {
+              b.area(cells.parseDouble());
+            } else if (column == footprint) {
+              b.footprint(cells.parseInt());
+            } else if (column == centroid) {
+              b.centroid(LatLong.valueOf(line, cells.start() + 1, cells.end() - 1));
+            } else if (column == outline) {
+              b.outline(PackedPolygon.valueOf(line, cells.start() + 2, cells.end() - 2));
+            }
+          }
           result.add(b);
         }
         line = fileReader.readLine();
@@ -60,9 +76,10 @@ public class CsvReader {
    * Reads the site file and populates the list of sites
    *
    * @param fileName the site file
+   * @param axis     the time axis of the readings of the sites
    * @return the list of builders
    */
-  static ArrayList<Site> readSiteFile(String fileName) throws IOException {
+  static ArrayList<Site> readSiteFile(String fileName, TimeAxis axis) throws IOException {
     int sID = 0;
     int bID = 3;
     BufferedReader fileReader;
@@ -73,11 +90,22 @@ public class CsvReader {
       // Skip header
       fileReader.readLine();
       String line;
+      CsvTokenizer cells = new CsvTokenizer();
       // Read through the file until there are no more lines to read
       while ((line = fileReader.readLine()) != null) {
-        String[] cells = splitIgnoreGiven(line, '"');
-        if (cells.length > 3) {
-          Site site = new SiteImpl(Integer.valueOf(cells[sID]), Integer.valueOf(cells[bID]));
+        int siteID = 0;
+        int buildingID = 0;
+        int column = 0;
+        cells.reset(line);
+        for (; cells.next(); column++) {
+          if (column == sID) {
+            siteID = cells.parseInt();
+          } else if (column == bID) {
+            buildingID = cells.parseInt();
+          }
+        }
+        if (column > 3) {
+          Site site = new SiteImpl(siteID, buildingID, axis);
           sites.add(site);
         }
       }
@@ -92,57 +120,121 @@ public class CsvReader {
   }
 
   /**
-   * Populates the given list of sites with the time to watt mappings
+   * Populates the given list of sites with the time to watt mappings. The file is parsed in
+   * parallel, straight into a new series for each site on the axis of its own.
    *
    * @param fileName the measure file
    * @param sites    the sites to populate
    * @return the list of sites, now with mappings
+   * @throws IOException if the file cannot be read
+   * @throws IllegalStateException if a time appears twice in the file
    */
   static ArrayList<Site> readMeasureFile(String fileName, ArrayList<Site> sites)
           throws IOException {
-    int time = 0;
-    BufferedReader fileReader;
     Objects.requireNonNull(fileName);
-    try {
-      fileReader = new BufferedReader(new FileReader(fileName));
-      // Skip header
-      fileReader.readLine();
-      String line;
-      // read through the file until there are no more lines to read
-      while ((line = fileReader.readLine()) != null) {
-        String[] cells = splitIgnoreGiven(line, '"');
-        if (cells.length > 0) {
-          long unixTime = Long.valueOf(cells[0]);
-          for (Site s : sites) {
-            int cellLocation = s.siteID() + 1;
-            if (cells[cellLocation].equals("")) {
-              s.addTimeWatt(unixTime, 0);
-            } else {
-              s.addTimeWatt(unixTime, Double.valueOf(cells[cellLocation]));
-            }
-          }
-        }
+    int maxID = -1;
+    for (Site s : sites) {
+      maxID = Math.max(maxID, s.siteID());
+    }
+    WritableTimeSeries[] targets = new WritableTimeSeries[maxID + 1];
+    for (Site s : sites) {
+      if (s.siteID() >= 0) {
+        targets[s.siteID()] = new ArrayTimeSeries(s.series().axis());
       }
-      return sites;
-    } catch (IOException e) {
-      System.out.println("Error in readMeasureFile !!!");
-      e.printStackTrace();
-    } finally {
-      return sites;
     }
+    MeasureParser.parse(fileName, targets);
+    return attachSeries(sites, targets);
+  }
+
+  /**
+   * Gives the given sites the series of the binary measure file, which are read straight out of
+   * the mapped file. Sites without a block in the file keep their own, empty series.
+   *
+   * @param fileName the binary measure file
+   * @param sites    the sites to populate
+   * @return the list of sites, now backed by the mapped file
+   */
+  static ArrayList<Site> readBinaryMeasureFile(String fileName, ArrayList<Site> sites)
+          throws IOException {
+    Objects.requireNonNull(fileName);
+    return attachSeries(sites, MeasureFile.map(fileName));
+  }
+
+  /**
+   * Finds the time axis of the readings in the given measure file, from the binary measure file
+   * if it is current
+   *
+   * @param fileName the measure csv file
+   * @return the time axis shared by every site
+   * @throws IOException if the file cannot be read or has fewer than two rows
+   */
+  static TimeAxis readMeasureAxis(String fileName) throws IOException {
+    Objects.requireNonNull(fileName);
+    if (MeasureFile.isCurrent(fileName)) {
+      return MeasureFile.axisOf(MeasureFile.binaryName(fileName));
+    }
+    return MeasureParser.axisOf(fileName);
   }
 
   /**
-   * Builds an arraylist of buildings from the given csv files
+   * Parses every column of the measure file into its own series, without needing to know the
+   * sites first
+   *
+   * @param fileName the measure file
+   * @param axis     the time axis of the measure file
+   * @param progress the counter to add the number of parsed bytes to
+   * @return the series of each column after the time column, indexed by site id
+   */
+  static TimeSeries[] readMeasureColumns(String fileName, TimeAxis axis, AtomicLong progress)
+          throws IOException {
+    Objects.requireNonNull(fileName);
+    WritableTimeSeries[] series =
+            new WritableTimeSeries[Math.max(MeasureParser.columnsOf(fileName) - 1, 0)];
+    for (int i = 0; i < series.length; i++) {
+      series[i] = new ArrayTimeSeries(axis);
+    }
+    MeasureParser.parse(fileName, series, progress);
+    return series;
+  }
+
+  /**
+   * Gives each of the given sites the series with its id. Sites without a series keep their
+   * own.
+   *
+   * @param sites  the sites
+   * @param series the series, indexed by site id, with null for absent sites
+   * @return the list of sites, now backed by the given series
+   */
+  static ArrayList<Site> attachSeries(ArrayList<Site> sites, TimeSeries[] series) {
+    ArrayList<Site> result = new ArrayList<>(sites.size());
+    for (Site s : sites) {
+      if (s.siteID() >= 0 && s.siteID() < series.length && series[s.siteID()] != null) {
+        result.add(new SiteImpl(s.siteID(), s.buildingID(), series[s.siteID()]));
+      } else {
+        result.add(s);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Builds an arraylist of buildings from the given csv files. If the measure file has been
+   * converted into a binary measure file that is still current, the binary file is used instead.
    *
    * @return the arraylist of buildings
    */
   public static ArrayList<Building> build(String buildingName, String siteName, String
           measureName) throws IOException {
+    TimeAxis axis = readMeasureAxis(measureName);
     ArrayList<BuildingBuilder> initialBuildings =
-            readBuildingFile(buildingName);
-    ArrayList<Site> initialSites = readSiteFile(siteName);
-    ArrayList<Site> linkedSites = readMeasureFile(measureName, initialSites);
+            readBuildingFile(buildingName, axis);
+    ArrayList<Site> initialSites = readSiteFile(siteName, axis);
+    ArrayList<Site> linkedSites;
+    if (MeasureFile.isCurrent(measureName)) {
+      linkedSites = readBinaryMeasureFile(MeasureFile.binaryName(measureName), initialSites);
+    } else {
+      linkedSites = readMeasureFile(measureName, initialSites);
+    }
     linkSitesToBuildings(linkedSites, initialBuildings);
     ArrayList<Building> result = new ArrayList<>(initialBuildings.size());
     for (BuildingBuilder builder : initialBuildings) {
@@ -152,90 +244,21 @@ public class CsvReader {
   }
 
   /**
-   * Links sites with to their specified builders
+   * Links sites with to their specified builders, grouping the sites in one pass
    *
    * @param sites    the sites
    * @param builders the builders
    */
   static void linkSitesToBuildings(ArrayList<Site> sites,
                                    ArrayList<BuildingBuilder> builders) {
+    int maxID = -1;
     for (BuildingBuilder b : builders) {
-      ArrayList<Site> group = new ArrayList<>();
-      for (Site s : sites) {
-        if (s.buildingID() == b.identify()) {
-          group.add(s);
-        }
-      }
-      b.sites(group.toArray(new Site[group.size()]));
+      maxID = Math.max(maxID, b.identify());
     }
-  }
-
-
-  /**
-   * Splits a string at commas, ignores commas within quotations
-   *
-   * @return an array of strings that have been split.
-   */
-  public static String[] splitIgnoreGiven(String s, char toIgnore) {
-    Objects.requireNonNull(s);
-    int length = s.length();
-    if (length <= 1) {
-      return new String[]{s};
-    }
-    ArrayList<String> result = new ArrayList<>();
-    int delimeter = 0;
-    boolean visited = false;
-    for (int i = 0; i < length; i += 1) {
-      if (s.charAt(i) == toIgnore && !(i == length - 1)) {
-        visited = !visited;
-      } else if (s.charAt(i) == ',' && i == length - 1 && !visited) {
-        result.add(s.substring(delimeter, i));
-        result.add("");
-      } else if (i == length - 1) {
-        result.add(s.substring(delimeter, length));
-      } else if (s.charAt(i) == ',' && !visited) {
-        result.add(s.substring(delimeter, i));
-        delimeter = i + 1;
-      }
+    Site[][] groups = Campus.groupByBuilding(sites, maxID);
+    for (BuildingBuilder b : builders) {
+      b.sites(b.identify() >= 0 ? groups[b.identify()] : new Site[0]);
     }
-    return result.toArray(new String[result.size()]);
   }
 
-  /**
-   * Splits the string at commas, ignoring the values between the opening and closing char
-   *
-   * @param s      the string to split
-   * @param opener the opening character
-   * @param closer the closing character
-   * @return the array containing the split strings.
-   */
-  public static String[] splitIgnoreBetween(String s, char opener, char closer) {
-    Objects.requireNonNull(s);
-    if (opener == closer) {
-      return splitIgnoreGiven(s, opener);
-    }
-    int length = s.length();
-    if (length <= 1) {
-      return new String[]{s};
-    }
-    ArrayList<String> result = new ArrayList<>();
-    int delimeter = 0;
-    boolean visited = false;
-    for (int i = 0; i < length; i++) {
-      if (s.charAt(i) == opener && !(i == length - 1)) {
-        visited = true;
-      } else if (s.charAt(i) == closer && !(i == length - 1)) {
-        visited = false;
-      } else if (s.charAt(i) == ',' && i == length - 1 && !visited) {
-        result.add(s.substring(delimeter, i));
-        result.add("");
-      } else if (i == length - 1) {
-        result.add(s.substring(delimeter, length));
-      } else if (s.charAt(i) == ',' && !visited) {
-        result.add(s.substring(delimeter, i));
-        delimeter = i + 1;
-      }
-    }
-    return result.toArray(new String[result.size()]);
-  }
 }
@@ -0,0 +1,336 @@
+package Visual;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * A reusable cursor over the comma separated fields of a line. Commas between the opening and
+ * closing characters do not split fields. Instead of creating a string for every field, the
+ * tokenizer exposes the offsets of the current field and parses numbers in place.
+ */
+public class CsvTokenizer {
+  /**
+   * The largest number of significant digits that is parsed without falling back to the JDK
+   */
+  private static final int MAX_FAST_DIGITS = 15;
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private final char opener;
+  private final char closer;
+  private CharSequence seq;
+  private int limit;
+  private int position;
+  private int start;
+  private int end;
+  private boolean done = true;
+
+  /**
+   * Constructs a tokenizer that ignores commas within quotations
+   */
+  public CsvTokenizer() {
+    this('"', '"');
+  }
+
+  /**
+   * Constructs a tokenizer that ignores commas between the opening and closing character
+   *
+   * @param opener the opening character
+   * @param closer the closing character
+   */
+  public CsvTokenizer(char opener, char closer) {
+    this.opener = opener;
+    this.closer = closer;
+  }
+
+  /**
+   * Points the tokenizer at the given line
+   *
+   * @param seq the line to tokenize
+   * @return this tokenizer
+   */
+  public CsvTokenizer reset(CharSequence seq) {
+    Objects.requireNonNull(seq);
+    return reset(seq, 0, seq.length());
+  }
+
+  /**
+   * Points the tokenizer at the given range of characters
+   *
+   * @param seq  the characters to tokenize
+   * @param from the index of the first character
+   * @param to   the index after the last character
+   * @return this tokenizer
+   * @throws IndexOutOfBoundsException if the range is not in the sequence
+   */
+  public CsvTokenizer reset(CharSequence seq, int from, int to) {
+    Objects.requireNonNull(seq);
+    if (from < 0 || to > seq.length() || from > to) {
+      throw new IndexOutOfBoundsException("Improper range");
+    }
+    this.seq = seq;
+    this.limit = to;
+    this.position = from;
+    this.start = from;
+    this.end = from;
+    this.done = false;
+    return this;
+  }
+
+  /**
+   * Moves to the next field. A line always has at least one, possibly empty, field, and a
+   * trailing comma is followed by an empty field.
+   *
+   * @return true if there was another field
+   */
+  public boolean next() {
+    if (done) {
+      return false;
+    }
+    int depth = 0;
+    int i = position;
+    for (; i < limit; i++) {
+      char c = seq.charAt(i);
+      if (opener == closer && c == opener) {
+        depth ^= 1;
+      } else if (c == opener) {
+        depth++;
+      } else if (c == closer && depth > 0) {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        break;
+      }
+    }
+    start = position;
+    end = i;
+    if (i >= limit) {
+      done = true;
+    } else {
+      position = i + 1;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the first character of the current field
+   *
+   * @return the start of the field
+   */
+  public int start() {
+    return start;
+  }
+
+  /**
+   * Returns the index after the last character of the current field
+   *
+   * @return the end of the field
+   */
+  public int end() {
+    return end;
+  }
+
+  /**
+   * Returns whether the current field has no characters
+   *
+   * @return true if the field is empty
+   */
+  public boolean isEmpty() {
+    return start == end;
+  }
+
+  /**
+   * Returns the current field as a string, without surrounding quotations
+   *
+   * @return the field
+   */
+  public String string() {
+    int from = start;
+    int to = end;
+    if (to - from > 1 && seq.charAt(from) == '"' && seq.charAt(to - 1) == '"') {
+      from++;
+      to--;
+    }
+    return seq.subSequence(from, to).toString();
+  }
+
+  /**
+   * Parses the current field as an int
+   *
+   * @return the value of the field
+   * @throws NumberFormatException if the field is not an int
+   */
+  public int parseInt() {
+    long value = parseLong(seq, start, end);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new NumberFormatException("Not an int: " + string());
+    }
+    return (int) value;
+  }
+
+  /**
+   * Parses the current field as a long
+   *
+   * @return the value of the field
+   * @throws NumberFormatException if the field is not a long
+   */
+  public long parseLong() {
+    return parseLong(seq, start, end);
+  }
+
+  /**
+   * Parses the current field as a double
+   *
+   * @return the value of the field
+   * @throws NumberFormatException if the field is not a double
+   */
+  public double parseDouble() {
+    return parseDouble(seq, start, end);
+  }
+
+  /**
+   * Parses the whole number in the given range, ignoring surrounding spaces and quotations
+   *
+   * @param s    the characters
+   * @param from the index of the first character
+   * @param to   the index after the last character
+   * @return the number
+   * @throws NumberFormatException if the range is not a whole number
+   */
+  public static long parseLong(CharSequence s, int from, int to) {
+    int i = skipLeading(s, from, to);
+    int last = skipTrailing(s, i, to);
+    boolean negative = false;
+    if (i < last && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+      negative = s.charAt(i) == '-';
+      i++;
+    }
+    if (i >= last || last - i > 18) {
+      throw new NumberFormatException("Not a whole number: " + s.subSequence(from, to));
+    }
+    long result = 0;
+    for (; i < last; i++) {
+      char c = s.charAt(i);
+      if (c < '0' || c > '9') {
+        throw new NumberFormatException("Not a whole number: " + s.subSequence(from, to));
+      }
+      result = result * 10 + (c - '0');
+    }
+    return negative ? -result : result;
+  }
+
+  /**
+   * Parses the number in the given range, ignoring surrounding spaces and quotations. Numbers
+   * with few enough digits are computed exactly from their digits, anything else goes through
+   * the JDK.
+   *
+   * @param s    the characters
+   * @param from the index of the first character
+   * @param to   the index after the last character
+   * @return the number
+   * @throws NumberFormatException if the range is not a number
+   */
+  public static double parseDouble(CharSequence s, int from, int to) {
+    int i = skipLeading(s, from, to);
+    int last = skipTrailing(s, i, to);
+    int first = i;
+    boolean negative = false;
+    if (i < last && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+      negative = s.charAt(i) == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean point = false;
+    boolean seen = false;
+    boolean simple = true;
+    for (; i < last && simple; i++) {
+      char c = s.charAt(i);
+      if (c >= '0' && c <= '9') {
+        seen = true;
+        if (digits > 0 || c != '0') {
+          digits++;
+        }
+        mantissa = mantissa * 10 + (c - '0');
+        if (point) {
+          scale++;
+        }
+      } else if (c == '.' && !point) {
+        point = true;
+      } else {
+        simple = false;
+      }
+    }
+    if (simple && seen && digits <= MAX_FAST_DIGITS && scale < POWERS_OF_TEN.length) {
+      // Both operands are exact doubles, so the division is correctly rounded
+      double result = mantissa / POWERS_OF_TEN[scale];
+      return negative ? -result : result;
+    }
+    return Double.valueOf(s.subSequence(first, last).toString());
+  }
+
+  /**
+   * Returns a read only view of the bytes remaining in the given buffer as ascii characters, so
+   * that the tokenizer can run over files without decoding them into strings
+   *
+   * @param buffer the bytes to view
+   * @return the characters of the buffer
+   */
+  public static CharSequence ascii(ByteBuffer buffer) {
+    Objects.requireNonNull(buffer);
+    return new AsciiSequence(buffer.slice());
+  }
+
+  private static int skipLeading(CharSequence s, int from, int to) {
+    while (from < to && (s.charAt(from) == ' ' || s.charAt(from) == '"')) {
+      from++;
+    }
+    return from;
+  }
+
+  private static int skipTrailing(CharSequence s, int from, int to) {
+    while (to > from && (s.charAt(to - 1) == ' ' || s.charAt(to - 1) == '"')) {
+      to--;
+    }
+    return to;
+  }
+
+  /**
+   * The characters of a byte buffer holding ascii text
+   */
+  private static final class AsciiSequence implements CharSequence {
+    private final ByteBuffer bytes;
+
+    AsciiSequence(ByteBuffer bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public int length() {
+      return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+      return (char) (bytes.get(index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      ByteBuffer view = bytes.duplicate();
+      view.position(start).limit(end);
+      return new AsciiSequence(view.slice());
+    }
+
+    @Override
+    public String toString() {
+      char[] chars = new char[length()];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = charAt(i);
+      }
+      return new String(chars);
+    }
+  }
+}
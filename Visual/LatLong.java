@@ -7,8 +7,8 @@ import java.util.Objects;
  * Represnts a latitude and longitude coordinate
  */
 public class LatLong {
-  private double latitude;
-  private double longitude;
+  private final double latitude;
+  private final double longitude;
 
   /**
    * Constructs a latitude and longitude from the given points.
@@ -50,16 +50,34 @@ public class LatLong {
     if (s == null) {
       throw new NullPointerException();
     }
-    int length = s.length();
-    int comma = s.indexOf(',');
-    if (length < 6 || s.charAt(0) != '[' || s.charAt(length - 1) != ']' || comma == -1) {
+    return valueOf(s, 0, s.length());
+  }
+
+  /**
+   * Returns the Visual.LatLong value of the given range of characters, parsing the numbers in
+   * place
+   *
+   * @param s    the characters containing the lat long
+   * @param from the index of the opening bracket
+   * @param to   the index after the closing bracket
+   * @return the Visual.LatLong representing the characters
+   * @throws NumberFormatException if the characters are formatted wrong
+   */
+  public static LatLong valueOf(CharSequence s, int from, int to) {
+    if (s == null) {
+      throw new NullPointerException();
+    }
+    int comma = -1;
+    for (int i = from; i < to && comma == -1; i++) {
+      if (s.charAt(i) == ',') {
+        comma = i;
+      }
+    }
+    if (to - from < 6 || s.charAt(from) != '[' || s.charAt(to - 1) != ']' || comma == -1) {
       throw new NumberFormatException();
     }
-    String lat = s.substring(1, comma);
-    String lon = s.substring(comma + 2, length - 1);
-
-    Double latitude = Double.valueOf(lat);
-    Double longitude = Double.valueOf(lon);
+    double latitude = CsvTokenizer.parseDouble(s, from + 1, comma);
+    double longitude = CsvTokenizer.parseDouble(s, comma + 1, to - 1);
 
     return new LatLong(latitude, longitude);
   }
@@ -73,18 +91,32 @@ public class LatLong {
    */
   public static LatLong[] valueOfAll(String s) {
     Objects.requireNonNull(s);
-    int length = s.length();
-    if (length < 6) {
+    return valueOfAll(s, 0, s.length());
+  }
+
+  /**
+   * Parses the given range of lat long coordinates into an array of Visual.LatLong, parsing the
+   * numbers in place
+   *
+   * @param s    the characters containing the lat long coordinates
+   * @param from the index of the first character
+   * @param to   the index after the last character
+   * @return an array of lat longs
+   * @throws NumberFormatException if the characters are formatted wrong
+   */
+  public static LatLong[] valueOfAll(CharSequence s, int from, int to) {
+    Objects.requireNonNull(s);
+    if (to - from < 6) {
       throw new NumberFormatException();
     }
-    String[] resultStrings = CsvReader.splitIgnoreBetween(s, '[', ']');
+    CsvTokenizer points = new CsvTokenizer('[', ']').reset(s, from, to);
     ArrayList<LatLong> resultLatLongs = new ArrayList<>();
-    for (String part : resultStrings) {
-      if (part.charAt(0) == ' ') {
-        resultLatLongs.add(valueOf(part.substring(1, part.length())));
-      } else {
-        resultLatLongs.add(valueOf(part));
+    while (points.next()) {
+      int start = points.start();
+      if (start < points.end() && s.charAt(start) == ' ') {
+        start++;
       }
+      resultLatLongs.add(valueOf(s, start, points.end()));
     }
     return resultLatLongs.toArray(new LatLong[resultLatLongs.size()]);
   }
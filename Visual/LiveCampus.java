@@ -0,0 +1,186 @@
+package Visual;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Buildings that keep taking readings after they have been loaded. Every site keeps its readings
+ * in a ring that slides forward as newer readings arrive, and every building keeps the mean of
+ * its sites in a ring of its own, which is adjusted by each reading instead of being computed
+ * again. The buildings are changed in place, so readings must be recorded on the same thread
+ * that reads the buildings.
+ */
+public class LiveCampus {
+  private final List<Building> buildings;
+  private final List<RingTimeSeries> rings = new ArrayList<>();
+  private final List<SiteImpl> sites = new ArrayList<>();
+  // The site with each id, the building it is in, and the rings of both
+  private final SiteImpl[] sitesByID;
+  private final BuildingImpl[] buildingsBySite;
+  private final RingTimeSeries[] siteRings;
+  private final RingTimeSeries[] buildingRings;
+  private final long step;
+  private long end;
+  private long latestTime;
+
+  /**
+   * Takes over the readings of the given buildings, each of which is copied into a live
+   * building with the same fields
+   *
+   * @param history the buildings as they were loaded
+   * @throws IllegalArgumentException if there are no buildings
+   */
+  public LiveCampus(List<? extends Building> history) {
+    Objects.requireNonNull(history, "Buildings not Initialized");
+    if (history.isEmpty()) {
+      throw new IllegalArgumentException("Need at least one building");
+    }
+    int maxID = -1;
+    for (Building b : history) {
+      for (Site s : b.sites()) {
+        maxID = Math.max(maxID, s.siteID());
+      }
+    }
+    sitesByID = new SiteImpl[maxID + 1];
+    buildingsBySite = new BuildingImpl[maxID + 1];
+    siteRings = new RingTimeSeries[maxID + 1];
+    buildingRings = new RingTimeSeries[maxID + 1];
+    List<Building> result = new ArrayList<>(history.size());
+    end = Long.MIN_VALUE;
+    for (Building b : history) {
+      Site[] liveSites = new Site[b.sites().length];
+      RingTimeSeries[] liveRings = new RingTimeSeries[liveSites.length];
+      for (int i = 0; i < liveSites.length; i++) {
+        Site s = b.sites()[i];
+        RingTimeSeries ring = new RingTimeSeries(s.series());
+        SiteImpl site = new SiteImpl(s.siteID(), s.buildingID(), ring);
+        rings.add(ring);
+        sites.add(site);
+        liveSites[i] = site;
+        liveRings[i] = ring;
+        end = Math.max(end, ring.end());
+      }
+      TimeAxis axis = b.series().axis();
+      RingTimeSeries aggregate = new RingTimeSeries(BuildingImpl.aggregate(liveSites, axis));
+      BuildingImpl building = new BuildingImpl(b, liveSites, aggregate);
+      rings.add(aggregate);
+      end = Math.max(end, aggregate.end());
+      for (int i = 0; i < liveSites.length; i++) {
+        int id = liveSites[i].siteID();
+        if (id >= 0) {
+          sitesByID[id] = (SiteImpl) liveSites[i];
+          buildingsBySite[id] = building;
+          siteRings[id] = liveRings[i];
+          buildingRings[id] = aggregate;
+        }
+      }
+      result.add(building);
+    }
+    buildings = Collections.unmodifiableList(result);
+    step = rings.get(0).step();
+    latestTime = end;
+  }
+
+  /**
+   * Returns the live buildings, in the same order as the buildings they were made from
+   *
+   * @return the buildings
+   */
+  public List<Building> buildings() {
+    return buildings;
+  }
+
+  /**
+   * Returns the window of readings kept, which moves forward as newer readings arrive
+   *
+   * @return the time axis of the live buildings
+   */
+  public TimeAxis axis() {
+    return rings.get(0).axis();
+  }
+
+  /**
+   * Returns the time of the newest reading, or the end of the loaded readings if none has
+   * arrived since
+   *
+   * @return the unix time
+   */
+  public long latestTime() {
+    return latestTime;
+  }
+
+  /**
+   * Records a reading of a site, replacing any reading already in its slot. A reading newer
+   * than every series slides all of them forward together, and the mean of the building of the
+   * site is adjusted by the change.
+   *
+   * @param siteID the id of the site
+   * @param time   the unix time of the reading
+   * @param watt   the wattage
+   * @return true if the reading was recorded, false if the site is not in any building or the
+   *         reading is older than the window of readings kept
+   */
+  public boolean record(int siteID, long time, double watt) {
+    if (siteID < 0 || siteID >= sitesByID.length || sitesByID[siteID] == null) {
+      return false;
+    }
+    if (time > end && (time - end + (step - 1) / 2) / step > 0) {
+      advanceTo(time);
+    }
+    RingTimeSeries ring = siteRings[siteID];
+    if (time < ring.start() - ring.step() / 2) {
+      return false;
+    }
+    int slot = ring.slot(time);
+    double previous = ring.get(slot);
+    ring.set(slot, watt);
+    sitesByID[siteID].recorded(time);
+    BuildingImpl building = buildingsBySite[siteID];
+    RingTimeSeries aggregate = buildingRings[siteID];
+    slot = aggregate.slot(time);
+    aggregate.set(slot, aggregate.get(slot)
+            + (watt - previous) / Math.max(1, building.sites().length));
+    building.recorded(time);
+    latestTime = Math.max(latestTime, time);
+    return true;
+  }
+
+  /**
+   * Records every row that is waiting in the given feed
+   *
+   * @param feed the feed to take rows from
+   * @return the number of readings recorded
+   */
+  public int apply(MeasureFeed feed) {
+    Objects.requireNonNull(feed, "Feed not Initialized");
+    int recorded = 0;
+    MeasureFeed.Row row;
+    while ((row = feed.poll()) != null) {
+      for (int siteID = 0; siteID < row.size(); siteID++) {
+        if (row.has(siteID) && record(siteID, row.time(), row.wattage(siteID))) {
+          recorded++;
+        }
+      }
+    }
+    return recorded;
+  }
+
+  /**
+   * Slides every series forward to the given time. The range indices of every site and
+   * building refer to the old slots, so they are all dropped.
+   */
+  private void advanceTo(long time) {
+    for (RingTimeSeries ring : rings) {
+      ring.advanceTo(time);
+      end = Math.max(end, ring.end());
+    }
+    for (SiteImpl site : sites) {
+      site.invalidate();
+    }
+    for (Building b : buildings) {
+      ((BuildingImpl) b).invalidate();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package Visual;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A read only time series that reads its slots straight out of a memory mapped measure file.
+ * Slots that were missing from the measure file hold NaN.
+ */
+public class MappedTimeSeries implements TimeSeries {
+  private final TimeAxis axis;
+  private final DoubleBuffer values;
+
+  /**
+   * Constructs a series over the given buffer, where the first double is slot 0
+   *
+   * @param start  the unix time of the first slot
+   * @param step   the number of seconds between slots
+   * @param values the buffer holding one double per slot
+   * @throws IllegalArgumentException if the step is not positive or there are no values
+   */
+  public MappedTimeSeries(long start, long step, DoubleBuffer values) {
+    if (values == null) {
+      throw new NullPointerException("Values not Initialized");
+    }
+    if (step <= 0 || values.remaining() < 1) {
+      throw new IllegalArgumentException("Improper step or values");
+    }
+    this.values = values.slice();
+    this.axis = new TimeAxis(start, start + step * (this.values.capacity() - 1L), step);
+  }
+
+  @Override
+  public TimeAxis axis() {
+    return axis;
+  }
+
+  @Override
+  public long start() {
+    return axis.start();
+  }
+
+  @Override
+  public long step() {
+    return axis.step();
+  }
+
+  @Override
+  public int size() {
+    return values.capacity();
+  }
+
+  @Override
+  public int slot(long time) {
+    return axis.slot(time);
+  }
+
+  @Override
+  public long time(int slot) {
+    return axis.time(slot);
+  }
+
+  @Override
+  public double get(int slot) {
+    double watt = values.get(slot);
+    return watt == watt ? watt : 0;
+  }
+
+  @Override
+  public boolean isSet(int slot) {
+    double watt = values.get(slot);
+    return watt == watt;
+  }
+
+  @Override
+  public void read(int from, double[] dest, int offset, int length) {
+    if (from < 0 || length < 0 || from + length > values.capacity()) {
+      throw new IndexOutOfBoundsException("No such range: " + Integer.toString(from) + ", "
+              + Integer.toString(length));
+    }
+    DoubleBuffer view = values.duplicate();
+    view.position(from);
+    view.get(dest, offset, length);
+    for (int i = offset; i < offset + length; i++) {
+      if (dest[i] != dest[i]) {
+        dest[i] = 0;
+      }
+    }
+  }
+
+  @Override
+  public DoubleBuffer view(int from, int to) {
+    if (from < 0 || from > to || to > values.capacity()) {
+      throw new IndexOutOfBoundsException("No such range: " + Integer.toString(from) + ", "
+              + Integer.toString(to));
+    }
+    DoubleBuffer view = values.duplicate();
+    view.position(from);
+    view.limit(to);
+    return view.slice().asReadOnlyBuffer();
+  }
+}
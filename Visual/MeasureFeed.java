@@ -0,0 +1,264 @@
+package Visual;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A live source of readings, in the same format as the rows of the measure file: the unix time
+ * followed by one column per site, where the column index minus one is the site id and an empty
+ * column is a missing reading. Rows are read on a background thread and queued until they are
+ * polled, so whoever owns the buildings can apply them on its own thread. Lines that do not
+ * start with a time, such as a header, are skipped.
+ */
+public class MeasureFeed implements Closeable {
+  /**
+   * How long to wait, in milliseconds, before looking at a tailed file again
+   */
+  private static final long POLL_MILLIS = 1000;
+
+  private final ConcurrentLinkedQueue<Row> rows = new ConcurrentLinkedQueue<>();
+  private final String fileName;
+  private final int port;
+  private volatile boolean open = true;
+  private volatile Closeable source;
+  private Thread worker;
+
+  private MeasureFeed(String fileName, int port) {
+    this.fileName = fileName;
+    this.port = port;
+  }
+
+  /**
+   * Creates a feed that reads every row of the given append only file, then keeps reading the
+   * rows appended to it
+   *
+   * @param fileName the file to tail
+   * @return the feed, which has not been started
+   */
+  public static MeasureFeed tail(String fileName) {
+    return new MeasureFeed(Objects.requireNonNull(fileName), -1);
+  }
+
+  /**
+   * Creates a feed that accepts connections on the given local port, one at a time, and reads
+   * the rows sent over them
+   *
+   * @param port the port to listen on
+   * @return the feed, which has not been started
+   * @throws IllegalArgumentException if the port is out of range
+   */
+  public static MeasureFeed listen(int port) {
+    if (port < 0 || port > 65535) {
+      throw new IllegalArgumentException("Port out of range");
+    }
+    return new MeasureFeed(null, port);
+  }
+
+  /**
+   * Starts reading on a background thread
+   *
+   * @throws IllegalStateException if the feed has already been started
+   */
+  public synchronized void start() {
+    if (worker != null) {
+      throw new IllegalStateException("Feed already started");
+    }
+    worker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (fileName != null) {
+            tailFile();
+          } else {
+            acceptConnections();
+          }
+        } catch (IOException e) {
+          if (open) {
+            System.out.println("Error in MeasureFeed !!!");
+            e.printStackTrace();
+          }
+        }
+      }
+    }, "Measure feed");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Takes the oldest row that has not been taken yet
+   *
+   * @return the row, or null if there is none waiting
+   */
+  public Row poll() {
+    return rows.poll();
+  }
+
+  /**
+   * Stops reading. Rows that were already queued can still be polled.
+   */
+  @Override
+  public void close() throws IOException {
+    open = false;
+    Thread thread = worker;
+    if (thread != null) {
+      thread.interrupt();
+    }
+    Closeable current = source;
+    if (current != null) {
+      current.close();
+    }
+  }
+
+  /**
+   * Follows the file, reading whatever has been appended since the last look. A partial last
+   * line is kept until the rest of it arrives, and a file that shrank is read from the start.
+   */
+  private void tailFile() throws IOException {
+    File file = new File(fileName);
+    long position = 0;
+    StringBuilder line = new StringBuilder();
+    byte[] buffer = new byte[1 << 16];
+    while (open) {
+      if (file.length() < position) {
+        position = 0;
+        line.setLength(0);
+      }
+      if (file.length() > position) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+          source = in;
+          in.seek(position);
+          int read;
+          while (open && (read = in.read(buffer)) > 0) {
+            position += read;
+            for (int i = 0; i < read; i++) {
+              char c = (char) (buffer[i] & 0xFF);
+              if (c == '\n') {
+                offer(line);
+                line.setLength(0);
+              } else if (c != '\r') {
+                line.append(c);
+              }
+            }
+          }
+        } finally {
+          source = null;
+        }
+      }
+      try {
+        Thread.sleep(POLL_MILLIS);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Accepts connections from this machine only and reads every line sent over them
+   */
+  private void acceptConnections() throws IOException {
+    try (ServerSocket server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+      source = server;
+      while (open) {
+        try (Socket socket = server.accept();
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                     socket.getInputStream(), StandardCharsets.US_ASCII))) {
+          source = socket;
+          String line;
+          while (open && (line = in.readLine()) != null) {
+            offer(line);
+          }
+        } finally {
+          source = server;
+        }
+      }
+    } finally {
+      source = null;
+    }
+  }
+
+  /**
+   * Parses the line and queues it if it is a row of readings. Malformed rows are skipped.
+   */
+  private void offer(CharSequence line) {
+    CsvTokenizer cells = new CsvTokenizer().reset(line);
+    if (line.length() == 0 || !cells.next()) {
+      return;
+    }
+    try {
+      long time = cells.parseLong();
+      double[] watts = new double[16];
+      int count = 0;
+      while (cells.next()) {
+        if (count == watts.length) {
+          watts = Arrays.copyOf(watts, count * 2);
+        }
+        watts[count++] = cells.isEmpty() ? Double.NaN : cells.parseDouble();
+      }
+      rows.add(new Row(time, Arrays.copyOf(watts, count)));
+    } catch (NumberFormatException e) {
+      return;
+    }
+  }
+
+  /**
+   * One row of the feed, the readings of every site at a single time
+   */
+  public static final class Row {
+    private final long time;
+    private final double[] watts;
+
+    Row(long time, double[] watts) {
+      this.time = time;
+      this.watts = watts;
+    }
+
+    /**
+     * Returns the unix time of the readings
+     *
+     * @return the time
+     */
+    public long time() {
+      return time;
+    }
+
+    /**
+     * Returns the number of sites the row has a column for
+     *
+     * @return the number of columns after the time
+     */
+    public int size() {
+      return watts.length;
+    }
+
+    /**
+     * Returns whether the row has a reading for the given site
+     *
+     * @param siteID the id of the site
+     * @return true if there is a reading
+     */
+    public boolean has(int siteID) {
+      return siteID >= 0 && siteID < watts.length && watts[siteID] == watts[siteID];
+    }
+
+    /**
+     * Returns the reading of the given site
+     *
+     * @param siteID the id of the site
+     * @return the wattage, or NaN if there is no reading
+     */
+    public double wattage(int siteID) {
+      return has(siteID) ? watts[siteID] : Double.NaN;
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package Visual;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+
+/**
+ * Reads and writes the binary measure format. The file starts with a header describing the time
+ * axis and the sites, followed by one contiguous block of doubles per site, one double per slot.
+ * Missing readings are stored as NaN. All values are big endian.
+ *
+ * <pre>
+ *   int    magic
+ *   int    version
+ *   long   start      unix time of slot 0
+ *   long   step       seconds between slots
+ *   int    slots      number of slots per site
+ *   int    siteCount  number of site blocks
+ *   int[]  siteIDs    the site of each block, in block order
+ *   ...    padding up to a multiple of 8 bytes
+ *   double[siteCount][slots] readings
+ * </pre>
+ */
+public class MeasureFile {
+  static final int MAGIC = 0x50574D53;
+  static final int VERSION = 1;
+  private static final int HEADER_SIZE = 32;
+
+  /**
+   * Returns the name of the binary measure file that belongs to the given csv file
+   *
+   * @param csvName the name of the measure csv file
+   * @return the name of the binary file
+   */
+  public static String binaryName(String csvName) {
+    Objects.requireNonNull(csvName);
+    if (csvName.endsWith(".csv")) {
+      return csvName.substring(0, csvName.length() - 4) + ".bin";
+    }
+    return csvName + ".bin";
+  }
+
+  /**
+   * Returns whether the binary file of the given csv file exists and is at least as new as it
+   *
+   * @param csvName the name of the measure csv file
+   * @return true if the binary file can be used in place of the csv file
+   */
+  public static boolean isCurrent(String csvName) {
+    File binary = new File(binaryName(csvName));
+    File csv = new File(csvName);
+    return binary.isFile() && (!csv.exists() || binary.lastModified() >= csv.lastModified());
+  }
+
+  /**
+   * Maps the given binary measure file and returns a series for every site in it. The series
+   * read straight out of the mapping, so nothing is parsed or copied onto the heap.
+   *
+   * @param fileName the binary measure file
+   * @return the series of each site, indexed by site id, with null for absent sites
+   * @throws IOException if the file cannot be read or is not a binary measure file
+   */
+  public static TimeSeries[] map(String fileName) throws IOException {
+    Objects.requireNonNull(fileName);
+    try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+         FileChannel channel = file.getChannel()) {
+      ByteBuffer header = header(fileName, channel);
+      long start = header.getLong();
+      long step = header.getLong();
+      int slots = header.getInt();
+      int siteCount = header.getInt();
+      long dataOffset = dataOffset(siteCount);
+      if (dataOffset + (long) siteCount * slots * 8 > channel.size()) {
+        throw new IOException(fileName + " is truncated");
+      }
+      ByteBuffer ids = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, siteCount * 4L);
+      int[] siteIDs = new int[siteCount];
+      int maxID = -1;
+      for (int i = 0; i < siteCount; i++) {
+        siteIDs[i] = ids.getInt();
+        maxID = Math.max(maxID, siteIDs[i]);
+      }
+      TimeSeries[] result = new TimeSeries[maxID + 1];
+      for (int i = 0; i < siteCount; i++) {
+        // One mapping per block keeps each below the 2GB limit of a single buffer
+        ByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY,
+                dataOffset + (long) i * slots * 8, slots * 8L);
+        result[siteIDs[i]] = new MappedTimeSeries(start, step, block.asDoubleBuffer());
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Reads the time axis of the given binary measure file out of its header
+   *
+   * @param fileName the binary measure file
+   * @return the time axis shared by every site in the file
+   * @throws IOException if the file cannot be read or is not a binary measure file
+   */
+  public static TimeAxis axisOf(String fileName) throws IOException {
+    Objects.requireNonNull(fileName);
+    try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+         FileChannel channel = file.getChannel()) {
+      ByteBuffer header = header(fileName, channel);
+      long start = header.getLong();
+      long step = header.getLong();
+      int slots = header.getInt();
+      if (step <= 0 || slots < 1) {
+        throw new IOException(fileName + " has an improper time axis");
+      }
+      return new TimeAxis(start, start + step * (slots - 1L), step);
+    }
+  }
+
+  /**
+   * Maps the header of the given binary measure file, positioned just past the version
+   */
+  private static ByteBuffer header(String fileName, FileChannel channel) throws IOException {
+    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+            Math.min(channel.size(), HEADER_SIZE));
+    if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+      throw new IOException(fileName + " is not a binary measure file");
+    }
+    if (header.getInt() != VERSION) {
+      throw new IOException(fileName + " has an unsupported version");
+    }
+    return header;
+  }
+
+  /**
+   * Writes the given series into a binary measure file. All series must share the same time axis.
+   *
+   * @param fileName the file to write
+   * @param siteIDs  the site id of each series
+   * @param series   the series to write
+   * @throws IOException if the file cannot be written
+   * @throws IllegalArgumentException if the series do not share a time axis
+   */
+  public static void write(String fileName, int[] siteIDs, TimeSeries[] series)
+          throws IOException {
+    Objects.requireNonNull(fileName);
+    if (siteIDs.length != series.length || series.length < 1) {
+      throw new IllegalArgumentException("Every series needs exactly one site id");
+    }
+    TimeSeries first = series[0];
+    for (TimeSeries s : series) {
+      if (!s.axis().equals(first.axis())) {
+        throw new IllegalArgumentException("Series must share the same time axis");
+      }
+    }
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(fileName), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(first.start());
+      out.writeLong(first.step());
+      out.writeInt(first.size());
+      out.writeInt(series.length);
+      for (int id : siteIDs) {
+        out.writeInt(id);
+      }
+      for (long i = HEADER_SIZE + siteIDs.length * 4L; i < dataOffset(series.length); i++) {
+        out.writeByte(0);
+      }
+      for (TimeSeries s : series) {
+        for (int slot = 0; slot < s.size(); slot++) {
+          out.writeDouble(s.isSet(slot) ? s.get(slot) : Double.NaN);
+        }
+      }
+    }
+  }
+
+  /**
+   * Converts the given measure csv file into the binary format. Every column after the time
+   * column becomes the block of the site whose id is the column index minus one.
+   *
+   * @param csvName    the measure csv file
+   * @param binaryName the binary file to write
+   * @throws IOException if either file cannot be accessed or the csv file has too few rows
+   */
+  public static void convert(String csvName, String binaryName) throws IOException {
+    Objects.requireNonNull(csvName);
+    int columns = MeasureParser.columnsOf(csvName);
+    TimeAxis axis = MeasureParser.axisOf(csvName);
+    WritableTimeSeries[] series = new WritableTimeSeries[columns - 1];
+    int[] siteIDs = new int[columns - 1];
+    for (int i = 0; i < series.length; i++) {
+      siteIDs[i] = i;
+      series[i] = new ArrayTimeSeries(axis);
+    }
+    try (BufferedReader fileReader = new BufferedReader(new FileReader(csvName))) {
+      fileReader.readLine();
+      String line;
+      CsvTokenizer cells = new CsvTokenizer();
+      while ((line = fileReader.readLine()) != null) {
+        cells.reset(line);
+        if (line.length() > 0 && cells.next()) {
+          int slot = series[0].slot(cells.parseLong());
+          for (int i = 1; i < columns && cells.next(); i++) {
+            if (!cells.isEmpty()) {
+              series[i - 1].set(slot, cells.parseDouble());
+            }
+          }
+        }
+      }
+    }
+    write(binaryName, siteIDs, series);
+  }
+
+  /**
+   * Returns the offset of the first site block, which is aligned to a double
+   *
+   * @param siteCount the number of sites in the file
+   * @return the offset of the readings
+   */
+  private static long dataOffset(int siteCount) {
+    return (HEADER_SIZE + siteCount * 4L + 7) & ~7L;
+  }
+
+  /**
+   * Converts a measure csv file into a binary measure file next to it.
+   *
+   * @param args the csv file, and optionally the binary file to write
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.out.println("Usage: MeasureFile <measure csv> [binary file]");
+      return;
+    }
+    String binary = args.length > 1 ? args[1] : binaryName(args[0]);
+    convert(args[0], binary);
+    System.out.println("Wrote " + binary);
+  }
+}
@@ -0,0 +1,331 @@
+package Visual;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses the measure csv file in parallel. The file is split into byte ranges that start and end
+ * on line boundaries, and every range is parsed on the fork join pool. Each row only ever writes
+ * the slot of its own time, so the workers write straight into the series of the sites without
+ * any locking or merging. A row first claims its slot in a bitset shared by all the workers, so
+ * a time that appears twice is always caught, whichever ranges the two rows fall in.
+ */
+class MeasureParser extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Ranges smaller than this are parsed by a single worker
+   */
+  private static final long MIN_CHUNK = 1 << 20;
+
+  /**
+   * The number of rows at the start of a measure file that the step is found from
+   */
+  private static final int STEP_ROWS = 1024;
+
+  private final FileChannel channel;
+  private final WritableTimeSeries[] targets;
+  private final TimeSeries axis;
+  // rows[slot / 64] has the bit of every slot that a row has been parsed into
+  private final AtomicLongArray rows;
+  private final long from;
+  private final long to;
+  private final AtomicLong progress;
+
+  private MeasureParser(FileChannel channel, WritableTimeSeries[] targets, TimeSeries axis,
+                        AtomicLongArray rows, long from, long to, AtomicLong progress) {
+    this.channel = channel;
+    this.targets = targets;
+    this.axis = axis;
+    this.rows = rows;
+    this.from = from;
+    this.to = to;
+    this.progress = progress;
+  }
+
+  /**
+   * Parses the given measure file into the given series. The series of the site with id i is
+   * filled from column i + 1. Empty cells are left unset, so that a meter that was down can be
+   * told apart from one reading 0. All series must share a time axis.
+   *
+   * @param fileName the measure file
+   * @param targets  the series to fill, indexed by site id, null for sites to skip
+   * @throws IOException if the file cannot be read
+   * @throws IllegalStateException if a time appears twice in the file
+   */
+  static void parse(String fileName, WritableTimeSeries[] targets) throws IOException {
+    parse(fileName, targets, new AtomicLong());
+  }
+
+  /**
+   * Parses the given measure file into the given series, adding the number of bytes parsed to
+   * the given counter as the workers go.
+   *
+   * @param fileName the measure file
+   * @param targets  the series to fill, indexed by site id, null for sites to skip
+   * @param progress the counter of parsed bytes
+   * @throws IOException if the file cannot be read
+   * @throws IllegalStateException if a time appears twice in the file
+   */
+  static void parse(String fileName, WritableTimeSeries[] targets, AtomicLong progress)
+          throws IOException {
+    Objects.requireNonNull(fileName);
+    Objects.requireNonNull(progress);
+    TimeSeries axis = null;
+    for (TimeSeries t : targets) {
+      if (t != null) {
+        axis = t;
+        break;
+      }
+    }
+    if (axis == null) {
+      return;
+    }
+    try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+         FileChannel channel = file.getChannel()) {
+      // Skip header
+      long first = nextLine(channel, 0);
+      AtomicLongArray rows = new AtomicLongArray((axis.size() + 63) / 64);
+      ForkJoinPool.commonPool().invoke(new MeasureParser(channel, targets, axis, rows, first,
+              channel.size(), progress));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Counts the columns of the header of the given measure file, the time column included
+   *
+   * @param fileName the measure file
+   * @return the number of columns
+   * @throws IOException if the file cannot be read or is empty
+   */
+  static int columnsOf(String fileName) throws IOException {
+    Objects.requireNonNull(fileName);
+    try (BufferedReader fileReader = new BufferedReader(new FileReader(fileName))) {
+      String header = fileReader.readLine();
+      if (header == null) {
+        throw new IOException(fileName + " is empty");
+      }
+      int columns = 0;
+      CsvTokenizer cells = new CsvTokenizer().reset(header);
+      while (cells.next()) {
+        columns++;
+      }
+      return columns;
+    }
+  }
+
+  /**
+   * Finds the time axis of the given measure file, whose rows should be in order of time. The
+   * step is the greatest common divisor of the times between the rows at the start of the file,
+   * so a repeated time, a gap or a row out of order there cannot throw it off, and the end is
+   * the time of the last row. Only the start and the end of the file are read.
+   *
+   * @param fileName the measure file
+   * @return the time axis of the rows
+   * @throws IOException if the file cannot be read, has fewer than two rows or ends before it
+   *                     starts
+   * @throws IllegalArgumentException if the rows at the start of the file are all at one time
+   */
+  static TimeAxis axisOf(String fileName) throws IOException {
+    Objects.requireNonNull(fileName);
+    long start = Long.MAX_VALUE;
+    long previous = 0;
+    long step = 0;
+    int count = 0;
+    CsvTokenizer cells = new CsvTokenizer();
+    try (BufferedReader fileReader = new BufferedReader(new FileReader(fileName))) {
+      // Skip header
+      fileReader.readLine();
+      String line;
+      while (count < STEP_ROWS && (line = fileReader.readLine()) != null) {
+        if (line.length() > 0 && cells.reset(line).next()) {
+          long time = cells.parseLong();
+          if (count > 0) {
+            step = gcd(step, Math.abs(time - previous));
+          }
+          start = Math.min(start, time);
+          previous = time;
+          count++;
+        }
+      }
+    }
+    if (count < 2) {
+      throw new IOException(fileName + " needs at least two readings");
+    }
+    if (step <= 0) {
+      throw new IllegalArgumentException(fileName + " has no time between its readings");
+    }
+    long end;
+    try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+         FileChannel channel = file.getChannel()) {
+      cells.reset(lastLine(channel));
+      cells.next();
+      end = cells.parseLong();
+    }
+    if (end < start) {
+      throw new IOException(fileName + " needs its readings in order of time");
+    }
+    return new TimeAxis(start, end, step);
+  }
+
+  /**
+   * Returns the greatest common divisor of the given numbers, neither of which is negative,
+   * where the divisor of 0 and a number is the number
+   */
+  private static long gcd(long a, long b) {
+    while (b != 0) {
+      long rest = a % b;
+      a = b;
+      b = rest;
+    }
+    return a;
+  }
+
+  @Override
+  protected void compute() {
+    try {
+      if (to - from <= MIN_CHUNK) {
+        parseRange();
+        return;
+      }
+      long middle = nextLine(channel, from + (to - from) / 2);
+      if (middle >= to) {
+        parseRange();
+        return;
+      }
+      invokeAll(new MeasureParser(channel, targets, axis, rows, from, middle, progress),
+              new MeasureParser(channel, targets, axis, rows, middle, to, progress));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Parses every line in this range, which must start at the beginning of a line
+   */
+  private void parseRange() throws IOException {
+    if (from >= to) {
+      return;
+    }
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    CharSequence chars = CsvTokenizer.ascii(buffer);
+    CsvTokenizer cells = new CsvTokenizer();
+    int length = chars.length();
+    int lineStart = 0;
+    while (lineStart < length) {
+      int lineEnd = lineStart;
+      while (lineEnd < length && chars.charAt(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      int end = lineEnd;
+      if (end > lineStart && chars.charAt(end - 1) == '\r') {
+        end--;
+      }
+      if (end > lineStart) {
+        parseLine(cells.reset(chars, lineStart, end));
+      }
+      lineStart = lineEnd + 1;
+    }
+    progress.addAndGet(to - from);
+  }
+
+  /**
+   * Parses one row of the measure file
+   *
+   * @param cells the tokenizer positioned at the start of the row
+   */
+  private void parseLine(CsvTokenizer cells) {
+    cells.next();
+    int slot = axis.slot(cells.parseLong());
+    if (!claim(slot)) {
+      throw new IllegalStateException("Time already set with wattage !!!");
+    }
+    for (int cell = 1; cell <= targets.length && cells.next(); cell++) {
+      WritableTimeSeries target = targets[cell - 1];
+      if (target != null && !cells.isEmpty()) {
+        target.set(slot, cells.parseDouble());
+      }
+    }
+  }
+
+  /**
+   * Marks the given slot as parsed, unless another row already has
+   *
+   * @param slot the slot of a row
+   * @return true if no row had been parsed into the slot before
+   */
+  private boolean claim(int slot) {
+    int word = slot >>> 6;
+    long bit = 1L << slot;
+    long old;
+    do {
+      old = rows.get(word);
+      if ((old & bit) != 0) {
+        return false;
+      }
+    } while (!rows.compareAndSet(word, old, old | bit));
+    return true;
+  }
+
+  /**
+   * Returns the last line of the file that is not empty, reading back from the end in windows
+   * that double until one holds the whole line
+   */
+  private static String lastLine(FileChannel channel) throws IOException {
+    long size = channel.size();
+    for (long window = 4096; ; window *= 2) {
+      long from = Math.max(0, size - window);
+      ByteBuffer buffer = ByteBuffer.allocate((int) (size - from));
+      while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) > 0) {
+        // Keep reading until the window is full
+      }
+      String text = new String(buffer.array(), 0, buffer.position(),
+              StandardCharsets.US_ASCII).trim();
+      int lineStart = text.lastIndexOf('\n');
+      if (lineStart >= 0 || from == 0) {
+        return text.substring(lineStart + 1).trim();
+      }
+    }
+  }
+
+  /**
+   * Returns the offset of the first line that starts after the given offset
+   *
+   * @param channel the file
+   * @param offset  the offset to search from
+   * @return the offset just past the next line break, or the size of the file if there is none
+   */
+  private static long nextLine(FileChannel channel, long offset) throws IOException {
+    ByteBuffer window = ByteBuffer.allocate(4096);
+    long position = offset;
+    long size = channel.size();
+    while (position < size) {
+      window.clear();
+      int read = channel.read(window, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (window.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+}
@@ -0,0 +1,376 @@
+package Visual;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Records when a meter was down, meaning it has no reading. Every slot has a bit that says
+ * whether it has a reading, and the runs of slots without one are kept in order as outages,
+ * along with the total length of the outages before each one. Whether a slot is down is a
+ * lookup of its bit, and how long a meter was down over any range of time is two binary
+ * searches over the outages. A live campus changes the bit of a slot as a reading arrives, and
+ * the outages are only found again the next time a range of time is asked about.
+ */
+public class OutageIndex {
+  private final long start;
+  private final long step;
+  private final int size;
+  // Changed in place one bit at a time, always by the same thread, before the version
+  private final long[] valid;
+  private volatile int version;
+  private volatile Runs runs;
+
+  /**
+   * Builds the index from a bitmap of the slots with readings
+   */
+  private OutageIndex(long start, long step, int size, long[] valid) {
+    this.start = start;
+    this.step = step;
+    this.size = size;
+    this.valid = valid;
+  }
+
+  /**
+   * Indexes the outages of a single meter, which is down wherever its series has no reading
+   *
+   * @param series the readings of the meter
+   * @return the index
+   */
+  public static OutageIndex of(TimeSeries series) {
+    Objects.requireNonNull(series, "Series not Initialized");
+    int size = series.size();
+    long[] valid = new long[(size + 63) >>> 6];
+    for (int slot = 0; slot < size; slot++) {
+      if (series.isSet(slot)) {
+        valid[slot >>> 6] |= 1L << slot;
+      }
+    }
+    return new OutageIndex(series.start(), series.step(), size, valid);
+  }
+
+  /**
+   * Indexes the outages of a building on the given time axis. A building is down wherever none
+   * of its sites has a reading, so a building without sites is always down.
+   *
+   * @param sites the sites of the building
+   * @param axis  the series whose slots the index uses
+   * @return the index
+   */
+  public static OutageIndex of(Site[] sites, TimeSeries axis) {
+    Objects.requireNonNull(sites, "Sites not Initialized");
+    int size = axis.size();
+    long[] valid = new long[(size + 63) >>> 6];
+    for (Site s : sites) {
+      OutageIndex site = s.outages();
+      if (site.start == axis.start() && site.step == axis.step() && site.size == size) {
+        for (int i = 0; i < valid.length; i++) {
+          valid[i] |= site.valid[i];
+        }
+      } else {
+        for (int slot = 0; slot < size; slot++) {
+          if (!site.isDownAt(axis.time(slot))) {
+            valid[slot >>> 6] |= 1L << slot;
+          }
+        }
+      }
+    }
+    return new OutageIndex(axis.start(), axis.step(), size, valid);
+  }
+
+  /**
+   * Records whether the meter has a reading in the given slot, after the reading in the slot
+   * changed. The outages are found again when they are next needed. Only one thread may change
+   * an index.
+   *
+   * @param slot       the slot
+   * @param hasReading true if the slot now has a reading
+   * @throws IndexOutOfBoundsException if the slot is not in the series
+   */
+  void mark(int slot, boolean hasReading) {
+    if (isDown(slot) != hasReading) {
+      return;
+    }
+    if (hasReading) {
+      valid[slot >>> 6] |= 1L << slot;
+    } else {
+      valid[slot >>> 6] &= ~(1L << slot);
+    }
+    version++;
+  }
+
+  /**
+   * Returns whether the meter has no reading in the given slot
+   *
+   * @param slot the slot
+   * @return true if the meter was down
+   * @throws IndexOutOfBoundsException if the slot is not in the series
+   */
+  public boolean isDown(int slot) {
+    if (slot < 0 || slot >= size) {
+      throw new IndexOutOfBoundsException("No such slot: " + Integer.toString(slot));
+    }
+    return (valid[slot >>> 6] & (1L << slot)) == 0;
+  }
+
+  /**
+   * Returns whether the meter has no reading at the given time, rounded to the nearest slot
+   *
+   * @param time the unix time
+   * @return true if the meter was down
+   */
+  public boolean isDownAt(long time) {
+    return isDown(slot(time));
+  }
+
+  /**
+   * Returns the number of slots in [from, to) without a reading
+   *
+   * @param from the first slot
+   * @param to   the slot after the last slot
+   * @return the number of slots the meter was down
+   * @throws IndexOutOfBoundsException if the range is not in the series
+   */
+  public long downSlots(int from, int to) {
+    if (from < 0 || from > to || to > size) {
+      throw new IndexOutOfBoundsException("No such range: " + Integer.toString(from) + ", "
+              + Integer.toString(to));
+    }
+    Runs outages = runs();
+    int first = outages.firstEndingAfter(from);
+    int last = outages.firstStartingAt(to);
+    if (first >= last) {
+      return 0;
+    }
+    return outages.downBefore[last] - outages.downBefore[first]
+            - Math.max(0, from - outages.starts[first])
+            - Math.max(0, outages.ends[last - 1] - to);
+  }
+
+  /**
+   * Returns whether the meter was down at any time between the given unix times
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return true if any slot between the times has no reading
+   * @throws IllegalArgumentException if to is before from
+   */
+  public boolean wasDown(long from, long to) {
+    checkTimes(from, to);
+    int first = ceilingSlot(from);
+    int last = ceilingSlot(to);
+    Runs outages = runs();
+    return outages.firstEndingAfter(first) < outages.firstStartingAt(last);
+  }
+
+  /**
+   * Returns the share of the slots between the given unix times that have a reading
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the uptime between 0 and 1
+   * @throws IllegalArgumentException if to is before from or there are no slots between them
+   */
+  public double uptime(long from, long to) {
+    checkTimes(from, to);
+    int first = ceilingSlot(from);
+    int last = ceilingSlot(to);
+    if (first >= last) {
+      throw new IllegalArgumentException("No readings between the given times");
+    }
+    return 1 - downSlots(first, last) / (double) (last - first);
+  }
+
+  /**
+   * Returns the number of separate outages
+   *
+   * @return the number of outages
+   */
+  public int outages() {
+    return runs().starts.length;
+  }
+
+  /**
+   * Returns the unix time of the first slot of the given outage
+   *
+   * @param outage the index of the outage, in order of time
+   * @return the time the meter went down
+   */
+  public long outageStart(int outage) {
+    return start + step * runs().starts[outage];
+  }
+
+  /**
+   * Returns the unix time of the first slot after the given outage with a reading
+   *
+   * @param outage the index of the outage, in order of time
+   * @return the time the meter came back
+   */
+  public long outageEnd(int outage) {
+    return start + step * runs().ends[outage];
+  }
+
+  /**
+   * Returns the sites that were down at any time between the given unix times
+   *
+   * @param sites the sites to look through
+   * @param from  the unix time to start at
+   * @param to    the unix time to end before
+   * @return the sites that were down, in the given order
+   * @throws IllegalArgumentException if to is before from
+   */
+  public static List<Site> downBetween(List<? extends Site> sites, long from, long to) {
+    Objects.requireNonNull(sites, "Sites not Initialized");
+    List<Site> result = new ArrayList<>();
+    for (Site s : sites) {
+      if (s.outages().wasDown(from, to)) {
+        result.add(s);
+      }
+    }
+    return result;
+  }
+
+  private int slot(long time) {
+    if (time <= start) {
+      return 0;
+    }
+    long slot = (time - start + (step - 1) / 2) / step;
+    return slot >= size ? size - 1 : (int) slot;
+  }
+
+  private int ceilingSlot(long time) {
+    if (time <= start) {
+      return 0;
+    }
+    long slot = (time - start + step - 1) / step;
+    return slot > size ? size : (int) slot;
+  }
+
+  private static void checkTimes(long from, long to) {
+    if (to < from) {
+      throw new IllegalArgumentException("End time is before start time");
+    }
+  }
+
+  /**
+   * Returns the outages as the bitmap is now, finding them again if a bit changed since
+   */
+  private Runs runs() {
+    int current = version;
+    Runs result = runs;
+    if (result == null || result.version != current) {
+      result = new Runs(current);
+      runs = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the first slot at or after the given slot without a reading, or the size
+   */
+  private int nextDown(int slot) {
+    if (slot >= size) {
+      return size;
+    }
+    int word = slot >>> 6;
+    long bits = ~valid[word] & (-1L << slot);
+    while (bits == 0) {
+      if (++word >= valid.length) {
+        return size;
+      }
+      bits = ~valid[word];
+    }
+    return Math.min(size, (word << 6) + Long.numberOfTrailingZeros(bits));
+  }
+
+  /**
+   * Returns the first slot at or after the given slot with a reading, or the size
+   */
+  private int nextUp(int slot) {
+    if (slot >= size) {
+      return size;
+    }
+    int word = slot >>> 6;
+    long bits = valid[word] & (-1L << slot);
+    while (bits == 0) {
+      if (++word >= valid.length) {
+        return size;
+      }
+      bits = valid[word];
+    }
+    return Math.min(size, (word << 6) + Long.numberOfTrailingZeros(bits));
+  }
+
+  /**
+   * The runs of slots without a reading, in order, as they were at one version of the bitmap
+   */
+  private final class Runs {
+    private final int version;
+    // starts[k] and ends[k] are the slots [start, end) of the k-th outage
+    private final int[] starts;
+    private final int[] ends;
+    // downBefore[k] is the number of slots in the outages before the k-th one
+    private final long[] downBefore;
+
+    /**
+     * Finds the outages in a single pass, so that they stay in order even if a bit changes
+     * underneath, in which case the version no longer matches and they are found again
+     */
+    Runs(int version) {
+      this.version = version;
+      int[] foundStarts = new int[16];
+      int[] foundEnds = new int[16];
+      int count = 0;
+      for (int slot = nextDown(0); slot < size; slot = nextDown(foundEnds[count - 1])) {
+        if (count == foundStarts.length) {
+          foundStarts = Arrays.copyOf(foundStarts, count * 2);
+          foundEnds = Arrays.copyOf(foundEnds, count * 2);
+        }
+        foundStarts[count] = slot;
+        foundEnds[count] = nextUp(slot);
+        count++;
+      }
+      starts = Arrays.copyOf(foundStarts, count);
+      ends = Arrays.copyOf(foundEnds, count);
+      downBefore = new long[count + 1];
+      for (int k = 0; k < count; k++) {
+        downBefore[k + 1] = downBefore[k] + ends[k] - starts[k];
+      }
+    }
+
+    /**
+     * Returns the index of the first outage that ends after the given slot
+     */
+    int firstEndingAfter(int slot) {
+      int low = 0;
+      int high = ends.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (ends[middle] <= slot) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Returns the index of the first outage that starts at or after the given slot
+     */
+    int firstStartingAt(int slot) {
+      int low = 0;
+      int high = starts.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (starts[middle] < slot) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -0,0 +1,316 @@
+package Visual;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An outline kept as a single array of coordinates, with the latitude and longitude of each
+ * point next to each other, along with its bounding box. Outlines are read far more often than
+ * they are made, so no object is created per point.
+ */
+public final class PackedPolygon {
+  private final double[] coordinates;
+  private final double minLat;
+  private final double maxLat;
+  private final double minLongitude;
+  private final double maxLongitude;
+
+  /**
+   * Constructs a polygon from a copy of the given coordinates
+   *
+   * @param coordinates the latitude and longitude of each point, one after the other
+   * @throws IllegalArgumentException if there is not a longitude for every latitude
+   */
+  public PackedPolygon(double[] coordinates) {
+    this(coordinates.clone(), coordinates.length);
+  }
+
+  /**
+   * Constructs a polygon from the first length coordinates, taking ownership of the array
+   */
+  private PackedPolygon(double[] coordinates, int length) {
+    if (length % 2 != 0) {
+      throw new IllegalArgumentException("Every point needs a latitude and a longitude");
+    }
+    this.coordinates = length == coordinates.length
+            ? coordinates : Arrays.copyOf(coordinates, length);
+    double south = Double.POSITIVE_INFINITY;
+    double north = Double.NEGATIVE_INFINITY;
+    double west = Double.POSITIVE_INFINITY;
+    double east = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < length; i += 2) {
+      south = Math.min(south, coordinates[i]);
+      north = Math.max(north, coordinates[i]);
+      west = Math.min(west, coordinates[i + 1]);
+      east = Math.max(east, coordinates[i + 1]);
+    }
+    minLat = south;
+    maxLat = north;
+    minLongitude = west;
+    maxLongitude = east;
+  }
+
+  /**
+   * Packs the given points into a polygon
+   *
+   * @param points the points of the outline
+   * @return the polygon
+   */
+  public static PackedPolygon of(LatLong[] points) {
+    Objects.requireNonNull(points, "Outline not Initialized");
+    double[] coordinates = new double[points.length * 2];
+    for (int i = 0; i < points.length; i++) {
+      coordinates[2 * i] = points[i].lat();
+      coordinates[2 * i + 1] = points[i].longitude();
+    }
+    return new PackedPolygon(coordinates, coordinates.length);
+  }
+
+  /**
+   * Parses the given range of lat long coordinates straight into a polygon, in the same format
+   * as {@link LatLong#valueOfAll(CharSequence, int, int)}
+   *
+   * @param s    the characters containing the lat long coordinates
+   * @param from the index of the first character
+   * @param to   the index after the last character
+   * @return the polygon
+   * @throws NumberFormatException if the characters are formatted wrong
+   */
+  public static PackedPolygon valueOf(CharSequence s, int from, int to) {
+    Objects.requireNonNull(s);
+    if (to - from < 6) {
+      throw new NumberFormatException();
+    }
+    CsvTokenizer points = new CsvTokenizer('[', ']').reset(s, from, to);
+    double[] coordinates = new double[32];
+    int length = 0;
+    while (points.next()) {
+      int start = points.start();
+      int end = points.end();
+      if (start < end && s.charAt(start) == ' ') {
+        start++;
+      }
+      int comma = -1;
+      for (int i = start; i < end && comma == -1; i++) {
+        if (s.charAt(i) == ',') {
+          comma = i;
+        }
+      }
+      if (end - start < 6 || s.charAt(start) != '[' || s.charAt(end - 1) != ']' || comma == -1) {
+        throw new NumberFormatException();
+      }
+      if (length + 2 > coordinates.length) {
+        coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+      }
+      coordinates[length++] = CsvTokenizer.parseDouble(s, start + 1, comma);
+      coordinates[length++] = CsvTokenizer.parseDouble(s, comma + 1, end - 1);
+    }
+    return new PackedPolygon(coordinates, length);
+  }
+
+  /**
+   * Returns the number of points in the outline
+   *
+   * @return the number of points
+   */
+  public int size() {
+    return coordinates.length / 2;
+  }
+
+  /**
+   * Returns the latitude of the given point, the first value of its pair
+   *
+   * @param point the index of the point
+   * @return the latitude
+   */
+  public double lat(int point) {
+    return coordinates[2 * point];
+  }
+
+  /**
+   * Returns the longitude of the given point, the second value of its pair
+   *
+   * @param point the index of the point
+   * @return the longitude
+   */
+  public double longitude(int point) {
+    return coordinates[2 * point + 1];
+  }
+
+  /**
+   * Returns the smallest latitude of the outline
+   *
+   * @return the smallest latitude, or infinity if there are no points
+   */
+  public double minLat() {
+    return minLat;
+  }
+
+  /**
+   * Returns the largest latitude of the outline
+   *
+   * @return the largest latitude, or negative infinity if there are no points
+   */
+  public double maxLat() {
+    return maxLat;
+  }
+
+  /**
+   * Returns the smallest longitude of the outline
+   *
+   * @return the smallest longitude, or infinity if there are no points
+   */
+  public double minLongitude() {
+    return minLongitude;
+  }
+
+  /**
+   * Returns the largest longitude of the outline
+   *
+   * @return the largest longitude, or negative infinity if there are no points
+   */
+  public double maxLongitude() {
+    return maxLongitude;
+  }
+
+  /**
+   * Tests whether the point is inside the outline by counting the edges a ray crosses. The
+   * bounding box is checked first.
+   *
+   * @param lat       the latitude of the point
+   * @param longitude the longitude of the point
+   * @return true if the point is inside
+   */
+  public boolean contains(double lat, double longitude) {
+    if (lat < minLat || lat > maxLat || longitude < minLongitude || longitude > maxLongitude) {
+      return false;
+    }
+    boolean inside = false;
+    for (int i = 0, j = coordinates.length - 2; i < coordinates.length; j = i, i += 2) {
+      double latI = coordinates[i];
+      double latJ = coordinates[j];
+      if ((latI > lat) != (latJ > lat) && longitude < (coordinates[j + 1] - coordinates[i + 1])
+              * (lat - latI) / (latJ - latI) + coordinates[i + 1]) {
+        inside = !inside;
+      }
+    }
+    return inside;
+  }
+
+  /**
+   * Simplifies the outline with the Douglas-Peucker algorithm, keeping only the points needed
+   * for no point to be further than the tolerance from the simplified outline. The outline is
+   * split at the point furthest from the first, so that closed outlines keep their shape.
+   *
+   * @param tolerance the largest distance allowed, in the units of the coordinates
+   * @return the simplified outline, or this outline if no point can be removed
+   * @throws IllegalArgumentException if the tolerance is negative
+   */
+  public PackedPolygon simplify(double tolerance) {
+    if (tolerance < 0) {
+      throw new IllegalArgumentException("Tolerance must not be negative");
+    }
+    int size = size();
+    if (size < 4) {
+      return this;
+    }
+    int furthest = 0;
+    double furthestDistance = -1;
+    for (int i = 1; i < size; i++) {
+      double dLat = lat(i) - lat(0);
+      double dLongitude = longitude(i) - longitude(0);
+      double distance = dLat * dLat + dLongitude * dLongitude;
+      if (distance > furthestDistance) {
+        furthest = i;
+        furthestDistance = distance;
+      }
+    }
+    boolean[] keep = new boolean[size];
+    keep[0] = true;
+    keep[furthest] = true;
+    keep[size - 1] = true;
+    // Pairs of the first and last point of the chains that are left to simplify
+    int[] stack = new int[2 * size];
+    int top = 0;
+    stack[top++] = 0;
+    stack[top++] = furthest;
+    stack[top++] = furthest;
+    stack[top++] = size - 1;
+    while (top > 0) {
+      int last = stack[--top];
+      int first = stack[--top];
+      int worst = -1;
+      double worstDistance = tolerance;
+      for (int i = first + 1; i < last; i++) {
+        double distance = distanceToSegment(i, first, last);
+        if (distance > worstDistance) {
+          worst = i;
+          worstDistance = distance;
+        }
+      }
+      if (worst != -1) {
+        keep[worst] = true;
+        stack[top++] = first;
+        stack[top++] = worst;
+        stack[top++] = worst;
+        stack[top++] = last;
+      }
+    }
+    int kept = 0;
+    for (boolean k : keep) {
+      if (k) {
+        kept++;
+      }
+    }
+    if (kept == size) {
+      return this;
+    }
+    double[] result = new double[kept * 2];
+    int length = 0;
+    for (int i = 0; i < size; i++) {
+      if (keep[i]) {
+        result[length++] = lat(i);
+        result[length++] = longitude(i);
+      }
+    }
+    return new PackedPolygon(result, length);
+  }
+
+  /**
+   * Returns the distance from the given point to the segment between the two other points
+   */
+  private double distanceToSegment(int point, int from, int to) {
+    double x = lat(point) - lat(from);
+    double y = longitude(point) - longitude(from);
+    double dx = lat(to) - lat(from);
+    double dy = longitude(to) - longitude(from);
+    double lengthSquared = dx * dx + dy * dy;
+    double t = lengthSquared == 0
+            ? 0 : Math.max(0, Math.min(1, (x * dx + y * dy) / lengthSquared));
+    return Math.hypot(x - t * dx, y - t * dy);
+  }
+
+  /**
+   * Copies the coordinates into the given array
+   *
+   * @param dest   the array to copy into
+   * @param offset the index to start copying at
+   * @throws IndexOutOfBoundsException if the coordinates do not fit
+   */
+  public void copyCoordinates(double[] dest, int offset) {
+    System.arraycopy(coordinates, 0, dest, offset, coordinates.length);
+  }
+
+  /**
+   * Unpacks the outline into one object per point
+   *
+   * @return a new array of the points
+   */
+  public LatLong[] toLatLongs() {
+    LatLong[] result = new LatLong[size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new LatLong(lat(i), longitude(i));
+    }
+    return result;
+  }
+}
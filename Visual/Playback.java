@@ -0,0 +1,160 @@
+package Visual;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Plays the readings of a list of buildings forward in time at a fixed speed, measured in
+ * simulated seconds per second of wall time. A background thread takes the snapshots of the
+ * upcoming frames ahead of time, each due at the wall time its simulated time is reached, and
+ * queues a few of them. Whoever draws the frames polls for the newest frame that is due and
+ * drops the ones it was too slow to show, so playback keeps to the clock however long a frame
+ * takes to draw or to compute. The buildings are read on the background thread, so they must
+ * not be changed while playing.
+ */
+public class Playback {
+  /**
+   * The number of frames computed ahead of time
+   */
+  private static final int AHEAD = 4;
+
+  private final List<? extends Building> buildings;
+  private final TimeAxis axis;
+  private final long from;
+  private final long end;
+  private final double speed;
+  private final long frameStep;
+  private final BlockingQueue<Frame> frames = new ArrayBlockingQueue<>(AHEAD);
+  private volatile boolean open = true;
+  private volatile boolean finished;
+  private long startNanos;
+  private Thread worker;
+
+  /**
+   * Creates a playback of the buildings of the given campus from the given time to the end of
+   * their readings
+   *
+   * @param campus    the campus to play
+   * @param from      the unix time to start at
+   * @param speed     the number of simulated seconds that pass in a second
+   * @param frameRate the number of frames to compute for each second
+   * @throws IllegalArgumentException if the speed or frame rate is not positive
+   */
+  public Playback(Campus campus, long from, double speed, double frameRate) {
+    Objects.requireNonNull(campus, "Campus not Initialized");
+    if (!(speed > 0) || !(frameRate > 0)) {
+      throw new IllegalArgumentException("Speed and frame rate must be positive");
+    }
+    TimeAxis axis = campus.axis();
+    this.buildings = campus.buildings();
+    this.axis = axis;
+    this.from = from;
+    this.end = axis.end();
+    this.speed = speed;
+    // Frames fall on whole slots, so that every frame shows a reading
+    this.frameStep = Math.max(1, Math.round(speed / frameRate / axis.step())) * axis.step();
+  }
+
+  /**
+   * Starts the clock and the background thread
+   *
+   * @throws IllegalStateException if the playback has already been started
+   */
+  public synchronized void start() {
+    if (worker != null) {
+      throw new IllegalStateException("Playback already started");
+    }
+    startNanos = System.nanoTime();
+    worker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          produce();
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    }, "Playback");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Takes the newest frame that is due, dropping any older frames that are due as well
+   *
+   * @return the snapshot of the frame, or null if no new frame is due yet
+   */
+  public CampusSnapshot poll() {
+    long now = System.nanoTime();
+    Frame newest = null;
+    Frame next;
+    while ((next = frames.peek()) != null && next.due - now <= 0) {
+      newest = frames.poll();
+    }
+    return newest == null ? null : newest.snapshot;
+  }
+
+  /**
+   * Returns the number of simulated seconds that pass in a second
+   *
+   * @return the speed
+   */
+  public double speed() {
+    return speed;
+  }
+
+  /**
+   * Returns whether the last frame, at the end of the readings, has been taken
+   *
+   * @return true if there is nothing left to play
+   */
+  public boolean isFinished() {
+    return finished && frames.isEmpty();
+  }
+
+  /**
+   * Stops the background thread. Frames that were already queued can still be polled.
+   */
+  public synchronized void stop() {
+    open = false;
+    if (worker != null) {
+      worker.interrupt();
+    }
+  }
+
+  /**
+   * Takes a snapshot for every frame step, blocking while the queue is full. A frame that would
+   * already be late is skipped for the frame at the current time of the clock.
+   */
+  private void produce() throws InterruptedException {
+    long frame = 0;
+    while (open) {
+      double elapsed = (System.nanoTime() - startNanos) / 1e9 * speed;
+      frame = Math.max(frame, (long) Math.ceil(elapsed / frameStep));
+      long offset = frame * frameStep;
+      long time = Math.min(from + offset, end);
+      long due = startNanos + (long) (offset / speed * 1e9);
+      frames.put(new Frame(due, CampusSnapshot.of(buildings, axis, time)));
+      if (time >= end) {
+        finished = true;
+        return;
+      }
+      frame++;
+    }
+  }
+
+  /**
+   * A snapshot along with the wall time at which it should be shown
+   */
+  private static final class Frame {
+    final long due;
+    final CampusSnapshot snapshot;
+
+    Frame(long due, CampusSnapshot snapshot) {
+      this.due = due;
+      this.snapshot = snapshot;
+    }
+  }
+}
@@ -0,0 +1,240 @@
+package Visual;
+
+import java.util.Objects;
+
+/**
+ * Answers sum, average, minimum and maximum queries over any range of slots of a time series in
+ * constant time. Sums come from prefix sums. Minimums and maximums come from sparse tables over
+ * blocks of slots, plus a bounded scan of the partial blocks at either end of the range.
+ */
+public class RangeIndex {
+  private static final int BLOCK_BITS = 5;
+  private static final int BLOCK = 1 << BLOCK_BITS;
+
+  private final TimeSeries series;
+  private final double[] prefix;
+  private final double[][] blockMin;
+  private final double[][] blockMax;
+
+  /**
+   * Builds the index of the given series, which should not change afterwards
+   *
+   * @param series the series to index
+   */
+  public RangeIndex(TimeSeries series) {
+    Objects.requireNonNull(series, "Series not Initialized");
+    this.series = series;
+    int size = series.size();
+    double[] values = new double[size];
+    series.read(0, values, 0, size);
+    prefix = new double[size + 1];
+    for (int i = 0; i < size; i++) {
+      prefix[i + 1] = prefix[i] + values[i];
+    }
+    int blocks = (size + BLOCK - 1) >> BLOCK_BITS;
+    int levels = 32 - Integer.numberOfLeadingZeros(Math.max(blocks, 1));
+    blockMin = new double[levels][];
+    blockMax = new double[levels][];
+    blockMin[0] = new double[blocks];
+    blockMax[0] = new double[blocks];
+    for (int b = 0; b < blocks; b++) {
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int i = b << BLOCK_BITS; i < Math.min(size, (b + 1) << BLOCK_BITS); i++) {
+        min = Math.min(min, values[i]);
+        max = Math.max(max, values[i]);
+      }
+      blockMin[0][b] = min;
+      blockMax[0][b] = max;
+    }
+    for (int k = 1; k < levels; k++) {
+      int width = 1 << (k - 1);
+      blockMin[k] = new double[blocks - (1 << k) + 1];
+      blockMax[k] = new double[blocks - (1 << k) + 1];
+      for (int b = 0; b < blockMin[k].length; b++) {
+        blockMin[k][b] = Math.min(blockMin[k - 1][b], blockMin[k - 1][b + width]);
+        blockMax[k][b] = Math.max(blockMax[k - 1][b], blockMax[k - 1][b + width]);
+      }
+    }
+  }
+
+  /**
+   * Returns the first slot whose time is at or after the given unix time, clamped to
+   * [0, size]
+   *
+   * @param time the unix time
+   * @return the slot
+   */
+  public int ceilingSlot(long time) {
+    if (time <= series.start()) {
+      return 0;
+    }
+    long slot = (time - series.start() + series.step() - 1) / series.step();
+    return slot > series.size() ? series.size() : (int) slot;
+  }
+
+  /**
+   * Returns the sum of the readings in the slots [from, to)
+   *
+   * @param from the first slot
+   * @param to   the slot after the last slot
+   * @return the sum
+   * @throws IllegalArgumentException if the range is improper
+   */
+  public double sum(int from, int to) {
+    checkRange(from, to);
+    return prefix[to] - prefix[from];
+  }
+
+  /**
+   * Returns the mean of the readings in the slots [from, to)
+   *
+   * @param from the first slot
+   * @param to   the slot after the last slot
+   * @return the mean
+   * @throws IllegalArgumentException if the range is improper or empty
+   */
+  public double average(int from, int to) {
+    checkNonEmpty(from, to);
+    return (prefix[to] - prefix[from]) / (to - from);
+  }
+
+  /**
+   * Returns the smallest reading in the slots [from, to)
+   *
+   * @param from the first slot
+   * @param to   the slot after the last slot
+   * @return the minimum
+   * @throws IllegalArgumentException if the range is improper or empty
+   */
+  public double min(int from, int to) {
+    checkNonEmpty(from, to);
+    int first = from >> BLOCK_BITS;
+    int last = (to - 1) >> BLOCK_BITS;
+    if (first == last) {
+      return scanMin(from, to);
+    }
+    double result = Math.min(scanMin(from, (first + 1) << BLOCK_BITS),
+            scanMin(last << BLOCK_BITS, to));
+    if (last - first > 1) {
+      int k = 31 - Integer.numberOfLeadingZeros(last - first - 1);
+      result = Math.min(result, Math.min(blockMin[k][first + 1],
+              blockMin[k][last - (1 << k)]));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the largest reading in the slots [from, to)
+   *
+   * @param from the first slot
+   * @param to   the slot after the last slot
+   * @return the maximum
+   * @throws IllegalArgumentException if the range is improper or empty
+   */
+  public double max(int from, int to) {
+    checkNonEmpty(from, to);
+    int first = from >> BLOCK_BITS;
+    int last = (to - 1) >> BLOCK_BITS;
+    if (first == last) {
+      return scanMax(from, to);
+    }
+    double result = Math.max(scanMax(from, (first + 1) << BLOCK_BITS),
+            scanMax(last << BLOCK_BITS, to));
+    if (last - first > 1) {
+      int k = 31 - Integer.numberOfLeadingZeros(last - first - 1);
+      result = Math.max(result, Math.max(blockMax[k][first + 1],
+              blockMax[k][last - (1 << k)]));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the energy used between the given unix times, which is the sum of the readings in
+   * [from, to) multiplied by the length of a slot in hours. For readings in watts this is watt
+   * hours.
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the energy
+   * @throws IllegalArgumentException if to is before from
+   */
+  public double energy(long from, long to) {
+    checkTimes(from, to);
+    return sum(ceilingSlot(from), ceilingSlot(to)) * series.step() / 3600.0;
+  }
+
+  /**
+   * Returns the mean reading between the given unix times
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the mean
+   * @throws IllegalArgumentException if to is before from or there are no readings between them
+   */
+  public double average(long from, long to) {
+    checkTimes(from, to);
+    return average(ceilingSlot(from), ceilingSlot(to));
+  }
+
+  /**
+   * Returns the largest reading between the given unix times
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the maximum
+   * @throws IllegalArgumentException if to is before from or there are no readings between them
+   */
+  public double peak(long from, long to) {
+    checkTimes(from, to);
+    return max(ceilingSlot(from), ceilingSlot(to));
+  }
+
+  /**
+   * Returns the smallest reading between the given unix times
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the minimum
+   * @throws IllegalArgumentException if to is before from or there are no readings between them
+   */
+  public double trough(long from, long to) {
+    checkTimes(from, to);
+    return min(ceilingSlot(from), ceilingSlot(to));
+  }
+
+  private double scanMin(int from, int to) {
+    double result = Double.POSITIVE_INFINITY;
+    for (int i = from; i < to; i++) {
+      result = Math.min(result, series.get(i));
+    }
+    return result;
+  }
+
+  private double scanMax(int from, int to) {
+    double result = Double.NEGATIVE_INFINITY;
+    for (int i = from; i < to; i++) {
+      result = Math.max(result, series.get(i));
+    }
+    return result;
+  }
+
+  private void checkRange(int from, int to) {
+    if (from < 0 || to > series.size() || from > to) {
+      throw new IllegalArgumentException("Improper range of slots");
+    }
+  }
+
+  private void checkNonEmpty(int from, int to) {
+    checkRange(from, to);
+    if (from == to) {
+      throw new IllegalArgumentException("No readings in the range");
+    }
+  }
+
+  private static void checkTimes(long from, long to) {
+    if (to < from) {
+      throw new IllegalArgumentException("Time range ends before it starts");
+    }
+  }
+}
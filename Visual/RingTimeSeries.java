@@ -0,0 +1,206 @@
+package Visual;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * A time series over a window of a fixed number of slots that slides forward as newer readings
+ * arrive. The slots are kept in a ring, so moving the window forward only clears the slots that
+ * fall into it, and appending a reading is O(1) amortized. Slot 0 is always the oldest slot of
+ * the window, and slots that have not been set hold NaN.
+ */
+public class RingTimeSeries implements WritableTimeSeries {
+  private final long step;
+  private final double[] values;
+  private long start;
+  // The index in values of slot 0
+  private int head;
+
+  /**
+   * Constructs an empty window of the given number of slots, starting at the given time
+   *
+   * @param start    the unix time of the first slot
+   * @param step     the number of seconds between slots
+   * @param capacity the number of slots in the window
+   * @throws IllegalArgumentException if the step or capacity is not positive
+   */
+  public RingTimeSeries(long start, long step, int capacity) {
+    if (step <= 0 || capacity <= 0) {
+      throw new IllegalArgumentException("Improper step or capacity");
+    }
+    this.start = start;
+    this.step = step;
+    this.values = new double[capacity];
+    Arrays.fill(values, Double.NaN);
+  }
+
+  /**
+   * Constructs a window over the same slots as the given series, holding a copy of its readings
+   *
+   * @param history the series to copy
+   */
+  public RingTimeSeries(TimeSeries history) {
+    this(history.start(), history.step(), history.size());
+    for (int slot = 0; slot < values.length; slot++) {
+      if (history.isSet(slot)) {
+        values[slot] = history.get(slot);
+      }
+    }
+  }
+
+  /**
+   * Returns the times of the slots of the window as it is now. The axis moves with the window,
+   * so a new one is returned after every move.
+   */
+  @Override
+  public TimeAxis axis() {
+    return new TimeAxis(start, end(), step);
+  }
+
+  @Override
+  public long start() {
+    return start;
+  }
+
+  @Override
+  public long step() {
+    return step;
+  }
+
+  @Override
+  public int size() {
+    return values.length;
+  }
+
+  /**
+   * Returns the unix time of the newest slot of the window
+   *
+   * @return the end time
+   */
+  public long end() {
+    return start + step * (values.length - 1);
+  }
+
+  @Override
+  public int slot(long time) {
+    if (time <= start) {
+      return 0;
+    }
+    long slot = (time - start + (step - 1) / 2) / step;
+    return slot >= values.length ? values.length - 1 : (int) slot;
+  }
+
+  @Override
+  public long time(int slot) {
+    if (slot < 0 || slot >= values.length) {
+      throw new IndexOutOfBoundsException("No such slot: " + Integer.toString(slot));
+    }
+    return start + step * slot;
+  }
+
+  @Override
+  public double get(int slot) {
+    double watt = values[index(slot)];
+    return watt == watt ? watt : 0;
+  }
+
+  @Override
+  public void set(int slot, double watt) {
+    values[index(slot)] = watt;
+  }
+
+  @Override
+  public boolean isSet(int slot) {
+    double watt = values[index(slot)];
+    return watt == watt;
+  }
+
+  @Override
+  public void read(int from, double[] dest, int offset, int length) {
+    if (from < 0 || length < 0 || from + length > values.length) {
+      throw new IndexOutOfBoundsException("No such slots: " + Integer.toString(from));
+    }
+    if (length == 0) {
+      return;
+    }
+    int first = Math.min(length, values.length - index(from));
+    System.arraycopy(values, index(from), dest, offset, first);
+    System.arraycopy(values, 0, dest, offset + first, length - first);
+    for (int i = offset; i < offset + length; i++) {
+      if (dest[i] != dest[i]) {
+        dest[i] = 0;
+      }
+    }
+  }
+
+  /**
+   * Returns a read only view of the slots in [from, to). The view reads straight out of the ring
+   * unless the range wraps around its end, in which case the range is copied. A view of the ring
+   * no longer lines up with the slots once the window moves.
+   */
+  @Override
+  public DoubleBuffer view(int from, int to) {
+    if (from < 0 || from > to || to > values.length) {
+      throw new IndexOutOfBoundsException("No such range: " + Integer.toString(from) + ", "
+              + Integer.toString(to));
+    }
+    int first = from == values.length ? 0 : index(from);
+    if (first + (to - from) <= values.length) {
+      return DoubleBuffer.wrap(values, first, to - from).slice().asReadOnlyBuffer();
+    }
+    double[] copy = new double[to - from];
+    int split = values.length - first;
+    System.arraycopy(values, first, copy, 0, split);
+    System.arraycopy(values, 0, copy, split, copy.length - split);
+    return DoubleBuffer.wrap(copy).asReadOnlyBuffer();
+  }
+
+  /**
+   * Slides the window forward until the given time falls into its newest slot, clearing the
+   * slots that enter the window. Nothing happens if the time is already in the window.
+   *
+   * @param time the unix time
+   * @return the number of slots the window moved
+   */
+  public int advanceTo(long time) {
+    long end = end();
+    if (time <= end + (step - 1) / 2) {
+      return 0;
+    }
+    long moved = (time - end + (step - 1) / 2) / step;
+    int cleared = (int) Math.min(moved, values.length);
+    for (int i = 0; i < cleared; i++) {
+      values[head] = Double.NaN;
+      head = head + 1 == values.length ? 0 : head + 1;
+    }
+    // The window moves as a whole, so clearing every slot once is enough for any distance
+    head = (int) ((head + (moved - cleared) % values.length) % values.length);
+    start += moved * step;
+    return (int) Math.min(moved, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Records a reading, sliding the window forward if it is newer than the window. Readings older
+   * than the window are dropped.
+   *
+   * @param time the unix time of the reading
+   * @param watt the wattage
+   * @return true if the reading was recorded
+   */
+  public boolean append(long time, double watt) {
+    advanceTo(time);
+    if (time < start - step / 2) {
+      return false;
+    }
+    set(slot(time), watt);
+    return true;
+  }
+
+  private int index(int slot) {
+    if (slot < 0 || slot >= values.length) {
+      throw new IndexOutOfBoundsException("No such slot: " + Integer.toString(slot));
+    }
+    int index = head + slot;
+    return index >= values.length ? index - values.length : index;
+  }
+}
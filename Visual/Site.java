@@ -14,6 +14,16 @@ public interface Site {
    */
   double wattage(long time);
 
+  /**
+   * Looks up the wattage at each of the given times in one call, rounding each time to its
+   * nearest reading
+   *
+   * @param times the unix times
+   * @param out   the array to write the wattage of each time into, at the same index
+   * @throws IndexOutOfBoundsException if out is shorter than times
+   */
+  void wattage(long[] times, double[] out);
+
   /**
    * Return the identifying number of the site
    *
@@ -29,14 +39,64 @@ public interface Site {
   int buildingID();
 
   /**
-   * Sets a relation between the specified time and watt
+   * Returns a hashMapping relation between the time and wattage for this site. The map is a
+   * boxed copy of the series, so prefer {@link #series()} for reading many values.
+   *
+   * @return the hashmap that contains the relation between time and wattage
    */
-  void addTimeWatt(long time, double watt);
+  HashMap<Long, Double> relation();
 
   /**
-   * Returns a hashMapping relation between the time and wattage for this site
+   * Returns the series that holds the readings of this site, which allows primitive bulk reads
    *
-   * @return the hashmap that contains the relation between time and wattage
+   * @return the time series of the site
    */
-  HashMap<Long, Double> relation();
+  TimeSeries series();
+
+  /**
+   * Returns the index of the times this site had no reading, built on first use
+   *
+   * @return the outages of the site
+   */
+  OutageIndex outages();
+
+  /**
+   * The energy the site used between the given unix times, in watt hours
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the energy used in [from, to)
+   * @throws IllegalArgumentException if to is before from
+   */
+  double energy(long from, long to);
+
+  /**
+   * The mean wattage of the site between the given unix times
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the mean wattage in [from, to)
+   * @throws IllegalArgumentException if there are no readings in [from, to)
+   */
+  double averageWattage(long from, long to);
+
+  /**
+   * The highest wattage of the site between the given unix times
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the peak wattage in [from, to)
+   * @throws IllegalArgumentException if there are no readings in [from, to)
+   */
+  double peak(long from, long to);
+
+  /**
+   * The lowest wattage of the site between the given unix times
+   *
+   * @param from the unix time to start at
+   * @param to   the unix time to end before
+   * @return the lowest wattage in [from, to)
+   * @throws IllegalArgumentException if there are no readings in [from, to)
+   */
+  double trough(long from, long to);
 }
@@ -3,23 +3,47 @@ package Visual;
 import java.util.HashMap;
 
 /**
- * Represents a site meter
+ * Represents a site meter. The readings of a loaded site never change, so it can be read from
+ * many threads at once. Only a live campus records new readings, into the series it gave its
+ * sites.
  */
 public class SiteImpl implements Site {
-  private HashMap<Long, Double> timeToWatts;
-  private int siteID;
-  private int buildingID;
+  private final TimeSeries timeToWatts;
+  private final int siteID;
+  private final int buildingID;
+  private volatile RangeIndex index;
+  private volatile OutageIndex outages;
 
-  public SiteImpl(int siteID, int buildingID) {
+  /**
+   * Constructs a site without readings, with a slot for every time of the given axis
+   *
+   * @param siteID     the id of the site
+   * @param buildingID the id of the building the site is in
+   * @param axis       the time axis of the readings
+   */
+  public SiteImpl(int siteID, int buildingID, TimeAxis axis) {
+    this(siteID, buildingID, new ArrayTimeSeries(axis));
+  }
+
+  /**
+   * Constructs a site that stores its readings in the given series
+   *
+   * @param siteID     the id of the site
+   * @param buildingID the id of the building the site is in
+   * @param series     the series holding the readings
+   */
+  public SiteImpl(int siteID, int buildingID, TimeSeries series) {
+    if (series == null) {
+      throw new NullPointerException("Series not Initialized");
+    }
     this.siteID = siteID;
     this.buildingID = buildingID;
-    timeToWatts = new HashMap<>();
+    timeToWatts = series;
   }
 
   @Override
   public double wattage(long time) {
-    long roundedTime = roundToNearestTime(1386547200, 1418168700, 900, time);
-    return timeToWatts.get(roundedTime);
+    return timeToWatts.get(timeToWatts.slot(time));
   }
 
   @Override
@@ -32,12 +56,27 @@ public class SiteImpl implements Site {
     return buildingID;
   }
 
-  @Override
-  public void addTimeWatt(long time, double watt) {
-    if (timeToWatts.get(time) != null) {
-      throw new IllegalStateException("Time already set with wattage !!!");
+  /**
+   * Catches up with a reading that was recorded into the series at the given time. The range
+   * index is dropped, while the outages only change the bit of the slot.
+   *
+   * @param time the unix time of the reading
+   */
+  void recorded(long time) {
+    index = null;
+    OutageIndex result = outages;
+    if (result != null) {
+      int slot = timeToWatts.slot(time);
+      result.mark(slot, timeToWatts.isSet(slot));
     }
-    timeToWatts.put(time, watt);
+  }
+
+  /**
+   * Drops the range index, after the series has changed underneath it
+   */
+  void invalidate() {
+    index = null;
+    outages = null;
   }
 
   @Override
@@ -47,32 +86,72 @@ public class SiteImpl implements Site {
 
   @Override
   public HashMap<Long, Double> relation() {
+    HashMap<Long, Double> result = new HashMap<>();
+    for (int slot = 0; slot < timeToWatts.size(); slot++) {
+      if (timeToWatts.isSet(slot)) {
+        result.put(timeToWatts.time(slot), timeToWatts.get(slot));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void wattage(long[] times, double[] out) {
+    if (out.length < times.length) {
+      throw new IndexOutOfBoundsException("Output is shorter than the times");
+    }
+    TimeSeries series = timeToWatts;
+    for (int i = 0; i < times.length; i++) {
+      out[i] = series.get(series.slot(times[i]));
+    }
+  }
+
+  @Override
+  public TimeSeries series() {
     return timeToWatts;
   }
 
+  @Override
+  public double energy(long from, long to) {
+    return rangeIndex().energy(from, to);
+  }
+
+  @Override
+  public double averageWattage(long from, long to) {
+    return rangeIndex().average(from, to);
+  }
+
+  @Override
+  public double peak(long from, long to) {
+    return rangeIndex().peak(from, to);
+  }
+
+  @Override
+  public double trough(long from, long to) {
+    return rangeIndex().trough(from, to);
+  }
+
+  @Override
+  public OutageIndex outages() {
+    OutageIndex result = outages;
+    if (result == null) {
+      result = OutageIndex.of(timeToWatts);
+      outages = result;
+    }
+    return result;
+  }
+
   /**
-   * Rounds the given int into the given range by the given difference
+   * Returns the range index over the series, building it on first use
    *
-   * @param low     the lower boundary of the range
-   * @param high    the higher boundary of the range
-   * @param diff    the difference
-   * @param toRound the number to round
-   * @return the rounded number
+   * @return the range index
    */
-  public static long roundToNearestTime(long low, long high, long diff, long toRound) {
-    if (low >= high || diff >= high - low) {
-      throw new IllegalArgumentException("Improper range or difference");
-    }
-    if (toRound <= low) {
-      return low;
-    } else if (toRound >= high) {
-      return high;
-    } else if ((toRound - low) % diff == 0) {
-      return toRound;
-    } else if ((toRound - low) % diff > diff / 2) {
-      return toRound + (diff - ((toRound - low) % diff));
-    } else {
-      return toRound - ((toRound - low) % diff);
+  private RangeIndex rangeIndex() {
+    RangeIndex result = index;
+    if (result == null) {
+      result = new RangeIndex(series());
+      index = result;
     }
+    return result;
   }
 }
@@ -0,0 +1,130 @@
+package Visual;
+
+/**
+ * The times at which readings are taken: a slot every step seconds from the start time up to
+ * and including the end time. Series that share an axis line up slot for slot, and converting
+ * between times and slots is a single division.
+ */
+public final class TimeAxis {
+  private final long start;
+  private final long step;
+  private final int size;
+
+  /**
+   * Constructs an axis covering [start, end] in steps of the given size. An end time that does
+   * not fall on a step is rounded down to the last step before it.
+   *
+   * @param start the unix time of the first slot
+   * @param end   the unix time of the last slot
+   * @param step  the number of seconds between slots
+   * @throws IllegalArgumentException if the end is before the start, the step is not positive
+   *                                  or there are too many slots
+   */
+  public TimeAxis(long start, long end, long step) {
+    if (end < start || step <= 0) {
+      throw new IllegalArgumentException("Improper range or difference");
+    }
+    // The distance can be more than a long holds, but never more than an unsigned one
+    long gaps = Long.divideUnsigned(end - start, step);
+    if (gaps < 0 || gaps >= Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many slots");
+    }
+    this.start = start;
+    this.step = step;
+    this.size = (int) gaps + 1;
+  }
+
+  /**
+   * Returns the unix time of the first slot
+   *
+   * @return the start time
+   */
+  public long start() {
+    return start;
+  }
+
+  /**
+   * Returns the unix time of the last slot
+   *
+   * @return the end time
+   */
+  public long end() {
+    return start + step * (size - 1);
+  }
+
+  /**
+   * Returns the number of seconds between two slots
+   *
+   * @return the step
+   */
+  public long step() {
+    return step;
+  }
+
+  /**
+   * Returns the number of slots
+   *
+   * @return the size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Rounds the given unix time to the nearest slot, clamping it onto the axis
+   *
+   * @param time the unix time
+   * @return the slot of the time
+   */
+  public int slot(long time) {
+    if (time <= start) {
+      return 0;
+    }
+    long slot = (time - start + (step - 1) / 2) / step;
+    return slot >= size ? size - 1 : (int) slot;
+  }
+
+  /**
+   * Returns the unix time of the given slot
+   *
+   * @param slot the slot
+   * @return the unix time of the slot
+   * @throws IndexOutOfBoundsException if the slot is not on the axis
+   */
+  public long time(int slot) {
+    if (slot < 0 || slot >= size) {
+      throw new IndexOutOfBoundsException("No such slot: " + Integer.toString(slot));
+    }
+    return start + step * slot;
+  }
+
+  /**
+   * Rounds the given unix time to the time of its nearest slot
+   *
+   * @param time the unix time
+   * @return the time of the slot
+   */
+  public long round(long time) {
+    return time(slot(time));
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof TimeAxis)) {
+      return false;
+    }
+    TimeAxis that = (TimeAxis) other;
+    return start == that.start && step == that.step && size == that.size;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(start) * 31 * 31 + Long.hashCode(step) * 31 + size;
+  }
+
+  @Override
+  public String toString() {
+    return "[" + Long.toString(start) + ", " + Long.toString(end()) + "] every "
+            + Long.toString(step) + "s";
+  }
+}
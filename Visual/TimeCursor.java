@@ -0,0 +1,134 @@
+package Visual;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The current time of a view of the buildings, kept apart from the buildings so that any number
+ * of views can look at one campus at different times. A cursor always sits on a slot of its time
+ * axis and never changes; moving it returns a new cursor, so it can be handed between threads
+ * without locking.
+ */
+public final class TimeCursor {
+  private final TimeAxis axis;
+  private final int slot;
+
+  /**
+   * Constructs a cursor at the slot of the given axis nearest to the given time
+   *
+   * @param axis the time axis to move along
+   * @param time the unix time
+   */
+  public TimeCursor(TimeAxis axis, long time) {
+    this(Objects.requireNonNull(axis, "Axis not Initialized"), axis.slot(time));
+  }
+
+  private TimeCursor(TimeAxis axis, int slot) {
+    this.axis = axis;
+    this.slot = slot;
+  }
+
+  /**
+   * Constructs a cursor on the time axis of the given campus
+   *
+   * @param campus the campus the cursor is for
+   * @param time   the unix time
+   * @return the cursor
+   */
+  public static TimeCursor of(Campus campus, long time) {
+    Objects.requireNonNull(campus, "Campus not Initialized");
+    return new TimeCursor(campus.axis(), time);
+  }
+
+  /**
+   * Returns the time axis the cursor moves along
+   *
+   * @return the time axis
+   */
+  public TimeAxis axis() {
+    return axis;
+  }
+
+  /**
+   * Returns the slot the cursor is on
+   *
+   * @return the slot
+   */
+  public int slot() {
+    return slot;
+  }
+
+  /**
+   * Returns the unix time of the slot the cursor is on
+   *
+   * @return the time
+   */
+  public long time() {
+    return axis.time(slot);
+  }
+
+  /**
+   * Returns a cursor at the slot nearest to the given time
+   *
+   * @param time the unix time
+   * @return the moved cursor
+   */
+  public TimeCursor moveTo(long time) {
+    return new TimeCursor(axis, axis.slot(time));
+  }
+
+  /**
+   * Returns a cursor the given number of slots later, or earlier if negative, stopping at
+   * either end of the axis
+   *
+   * @param slots the number of slots to move by
+   * @return the moved cursor
+   */
+  public TimeCursor move(int slots) {
+    long moved = Math.max(0, Math.min(axis.size() - 1, (long) slot + slots));
+    return new TimeCursor(axis, (int) moved);
+  }
+
+  /**
+   * Returns the wattage the given building was using at the time of the cursor
+   *
+   * @param building the building
+   * @return the wattage
+   */
+  public double wattage(Building building) {
+    return building.wattage(time());
+  }
+
+  /**
+   * Returns an order of buildings from the least power used at the time of the cursor to the
+   * most
+   *
+   * @return the comparator
+   */
+  public Comparator<Building> byWattage() {
+    final long time = time();
+    return new Comparator<Building>() {
+      @Override
+      public int compare(Building a, Building b) {
+        return Double.compare(a.wattage(time), b.wattage(time));
+      }
+    };
+  }
+
+  /**
+   * Takes a snapshot of the given buildings, which must be on the axis of the cursor, at the
+   * time of the cursor
+   *
+   * @param buildings the buildings to take a snapshot of
+   * @return the snapshot
+   */
+  public CampusSnapshot snapshot(List<? extends Building> buildings) {
+    return CampusSnapshot.of(buildings, axis, time());
+  }
+
+  @Override
+  public String toString() {
+    return "Cursor at " + Long.toString(time()) + " on " + axis.toString();
+  }
+}
@@ -0,0 +1,97 @@
+package Visual;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Represents a dense series of wattage readings taken at a fixed interval. Every reading lives
+ * in a slot, where slot 0 is the start time and each following slot is one step later. A series
+ * is read only through this interface.
+ */
+public interface TimeSeries {
+  /**
+   * Returns the times of the slots of the series
+   *
+   * @return the time axis
+   */
+  TimeAxis axis();
+
+  /**
+   * Returns the unix time of the first slot
+   *
+   * @return the start time
+   */
+  long start();
+
+  /**
+   * Returns the number of seconds between two slots
+   *
+   * @return the step
+   */
+  long step();
+
+  /**
+   * Returns the number of slots in the series
+   *
+   * @return the size
+   */
+  int size();
+
+  /**
+   * Rounds the given unix time to the nearest slot, clamping it into the range of the series
+   *
+   * @param time the unix time
+   * @return the slot of the time
+   */
+  int slot(long time);
+
+  /**
+   * Returns the unix time of the given slot
+   *
+   * @param slot the slot
+   * @return the unix time of the slot
+   * @throws IndexOutOfBoundsException if the slot is not in the series
+   */
+  long time(int slot);
+
+  /**
+   * Returns the wattage in the given slot, or 0 if the slot was never set
+   *
+   * @param slot the slot
+   * @return the wattage
+   * @throws IndexOutOfBoundsException if the slot is not in the series
+   */
+  double get(int slot);
+
+  /**
+   * Returns whether the given slot has been given a wattage
+   *
+   * @param slot the slot
+   * @return true if the slot has been set
+   * @throws IndexOutOfBoundsException if the slot is not in the series
+   */
+  boolean isSet(int slot);
+
+  /**
+   * Copies the wattages of the given number of slots, starting at the given slot, into the
+   * destination array. Slots that were never set are copied as 0.
+   *
+   * @param from   the first slot to copy
+   * @param dest   the array to copy into
+   * @param offset the index in dest to start copying to
+   * @param length the number of slots to copy
+   * @throws IndexOutOfBoundsException if the range is not in the series or does not fit in dest
+   */
+  void read(int from, double[] dest, int offset, int length);
+
+  /**
+   * Returns a read only view of the slots in [from, to), where the first double of the view is
+   * slot from. Slots that were never set read as NaN. Wherever it can, the view reads straight
+   * out of the storage of the series instead of copying it.
+   *
+   * @param from the first slot of the view
+   * @param to   the slot after the last slot of the view
+   * @return the view
+   * @throws IndexOutOfBoundsException if the range is not in the series
+   */
+  DoubleBuffer view(int from, int to);
+}
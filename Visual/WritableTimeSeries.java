@@ -0,0 +1,17 @@
+package Visual;
+
+/**
+ * A time series whose slots can be given readings. Only the parsers that fill a series and the
+ * live campus that records into one see this type, so everyone else reads series that cannot be
+ * changed through them.
+ */
+interface WritableTimeSeries extends TimeSeries {
+  /**
+   * Sets the wattage in the given slot
+   *
+   * @param slot the slot
+   * @param watt the wattage
+   * @throws IndexOutOfBoundsException if the slot is not in the series
+   */
+  void set(int slot, double watt);
+}
@@ -1,5 +1,6 @@
 package VisualizationMap;
 
+import de.fhpotsdam.unfolding.UnfoldingMap;
 import de.fhpotsdam.unfolding.geo.Location;
 import de.fhpotsdam.unfolding.marker.SimplePolygonMarker;
 import de.fhpotsdam.unfolding.utils.MapPosition;
@@ -8,55 +9,240 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
 
 
 import Visual.Building;
-import Visual.LatLong;
+import Visual.CampusSnapshot;
+import Visual.PackedPolygon;
+import Visual.TimeAxis;
 import processing.core.PGraphics;
+import processing.core.PShape;
 
 /**
  * A marker used to represent a building on the map
  */
-public final class BuildingMarker extends SimplePolygonMarker implements Comparable<BuildingMarker> {
+public final class BuildingMarker extends SimplePolygonMarker {
+  /**
+   * The color of buildings whose power meters are down
+   */
+  static final Color DOWNED = new Color(0, 128, 255, 225);
+
+  /**
+   * The level of buildings whose power meters are down, where other levels are ranks
+   */
+  static final int DOWNED_LEVEL = -1;
+
+  /**
+   * The level of a marker whose color was not given by a level
+   */
+  private static final int NO_LEVEL = Integer.MIN_VALUE;
+
+  // The palette of the last number of markers balanced, shared by everyone balancing as many
+  private static volatile Color[] palette = new Color[0];
+
+  /**
+   * How far, in pixels, the middle vertex of the outline may move relative to its first vertex
+   * before the shape is tessellated again
+   */
+  private static final float RESHAPE_TOLERANCE = 0.25f;
+
+  /**
+   * The zoom levels the map can be viewed at, each of which has its own simplified outline
+   */
+  static final int MIN_ZOOM = 15;
+  static final int MAX_ZOOM = 19;
+
   Building building;
   private Color c;
+  private int level = NO_LEVEL;
+  // The outline tessellated relative to its first vertex, kept until the zoom changes
+  private PShape shape;
+  private PackedPolygon shapeOutline;
+  private int shapeSize;
+  private float shapeDX;
+  private float shapeDY;
+  private int shapeFill;
+  // The outline is projected straight from the packed outline of the building, through one
+  // reused location, into these arrays when it has to be tessellated again
+  private final Location probe = new Location(0f, 0f);
+  private float[] xs = new float[0];
+  private float[] ys = new float[0];
+  // levels[zoom - MIN_ZOOM] is the outline simplified to half a pixel at that zoom level
+  private PackedPolygon[] levels;
   BuildingMarker(Building b/*, Color c*/) {
     Objects.requireNonNull(b, "Building must be set");
     building = b;
-    List<Location> locations = new ArrayList<>();
-    for (LatLong l : b.outline()) {
-      Location loc = new Location(l.longitude(), l.lat());
-      locations.add(loc);
-    }
-    this.addLocations(locations);
+    levels = levels(b.packedOutline());
     c = new Color(255, 255, 255, 0);
   }
 
+  /**
+   * Simplifies the outline for every zoom level. A pixel covers 360 / (256 * 2^zoom) degrees of
+   * longitude, and that times the cosine of the latitude in degrees of latitude, so the smaller
+   * of the two is used. The outline holds the latitude as the second value of each pair.
+   */
+  private static PackedPolygon[] levels(PackedPolygon outline) {
+    double latitude = Math.toRadians((outline.minLongitude() + outline.maxLongitude()) / 2);
+    double cosine = outline.size() > 0 ? Math.abs(Math.cos(latitude)) : 1;
+    PackedPolygon[] result = new PackedPolygon[MAX_ZOOM - MIN_ZOOM + 1];
+    for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; zoom++) {
+      double pixel = 360.0 / (256L << zoom) * cosine;
+      result[zoom - MIN_ZOOM] = outline.simplify(pixel / 2);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the outline to draw and hit test at the given zoom level
+   *
+   * @param zoom the zoom level of the map
+   * @return the outline simplified for the zoom level
+   */
+  PackedPolygon outline(int zoom) {
+    return levels[Math.min(MAX_ZOOM, Math.max(MIN_ZOOM, zoom)) - MIN_ZOOM];
+  }
+
+  /**
+   * Replaces the building of this marker with a more complete version of the same building,
+   * such as the building with its sites once they have been loaded
+   * @param b the building
+   * @throws IllegalArgumentException if the building has a different id
+   */
+  void attach(Building b) {
+    Objects.requireNonNull(b, "Building must be set");
+    if (b.buildingID() != building.buildingID()) {
+      throw new IllegalArgumentException("Can only attach the same building");
+    }
+    if (b.packedOutline() != building.packedOutline()) {
+      levels = levels(b.packedOutline());
+    }
+    building = b;
+  }
+
+  /**
+   * Projects the outline of the building, simplified for the zoom level of the map, onto the map
+   * and draws it. Only the first and middle vertices are projected while the retained shape still
+   * fits them, and the whole outline only when it has to be tessellated again. The locations of
+   * the map hold the longitude of the outline as their latitude, just as the csv files do.
+   */
   @Override
-  public int compareTo(BuildingMarker other) {
-    Objects.requireNonNull(other);
-    return this.building.compareTo(other.building);
+  public void draw(UnfoldingMap map) {
+    PackedPolygon outline = outline(map.getZoomLevel());
+    int size = outline.size();
+    if (size == 0) {
+      return;
+    }
+    float[] origin = project(map, outline, 0);
+    float originX = origin[0];
+    float originY = origin[1];
+    float[] middle = project(map, outline, size / 2);
+    float dx = middle[0] - originX;
+    float dy = middle[1] - originY;
+    PGraphics pg = map.mapDisplay.getOuterPG();
+    if (!fits(outline, size, dx, dy)) {
+      if (xs.length != size) {
+        xs = new float[size];
+        ys = new float[size];
+      }
+      for (int i = 0; i < size; i++) {
+        float[] xy = project(map, outline, i);
+        xs[i] = xy[0];
+        ys[i] = xy[1];
+      }
+      reshape(pg, outline, xs, ys, size);
+    }
+    drawShape(pg, originX, originY);
+  }
+
+  /**
+   * Projects the vertex of the outline at the given index onto the map
+   */
+  private float[] project(UnfoldingMap map, PackedPolygon outline, int index) {
+    probe.setLat((float) outline.longitude(index));
+    probe.setLon((float) outline.lat(index));
+    return map.mapDisplay.getObjectFromLocation(probe);
   }
 
+  @Override
   public void draw(PGraphics pg, List<MapPosition> mapPositions) {
-    // marker
-    pg.pushStyle();
-    pg.strokeWeight(2);
-    pg.stroke(0, 0, 0);
-    pg.fill(c.r, c.g, c.b, c.alpha);
-    if (this.isSelected()) {
-      pg.fill(255, 255, 255, 255);
+    int size = mapPositions.size();
+    if (size == 0) {
+      return;
     }
-    pg.beginShape();
-    for (MapPosition mapPosition : mapPositions) {
-      pg.vertex(mapPosition.x, mapPosition.y);
+    float originX = mapPositions.get(0).x;
+    float originY = mapPositions.get(0).y;
+    float dx = mapPositions.get(size / 2).x - originX;
+    float dy = mapPositions.get(size / 2).y - originY;
+    if (!fits(null, size, dx, dy)) {
+      float[] x = new float[size];
+      float[] y = new float[size];
+      for (int i = 0; i < size; i++) {
+        x[i] = mapPositions.get(i).x;
+        y[i] = mapPositions.get(i).y;
+      }
+      reshape(pg, null, x, y, size);
     }
-    pg.endShape();
-    pg.popStyle();
+    drawShape(pg, originX, originY);
+  }
+
+  /**
+   * Returns whether the retained shape was tessellated from the given outline and still fits it.
+   * Panning only moves the first vertex, which is applied as a translation, so the shape fits
+   * until the middle vertex moves relative to the first.
+   */
+  private boolean fits(PackedPolygon outline, int size, float dx, float dy) {
+    return shape != null && shapeOutline == outline && shapeSize == size
+            && Math.abs(dx - shapeDX) <= RESHAPE_TOLERANCE
+            && Math.abs(dy - shapeDY) <= RESHAPE_TOLERANCE;
+  }
+
+  /**
+   * Tessellates the projected outline relative to its first vertex
+   */
+  private void reshape(PGraphics pg, PackedPolygon outline, float[] x, float[] y, int size) {
+    float originX = x[0];
+    float originY = y[0];
+    int fill = currentFill();
+    shape = pg.createShape();
+    shape.beginShape();
+    shape.strokeWeight(2);
+    shape.stroke(0, 0, 0);
+    shape.fill((fill >> 16) & 0xFF, (fill >> 8) & 0xFF, fill & 0xFF, fill >>> 24);
+    for (int i = 0; i < size; i++) {
+      shape.vertex(x[i] - originX, y[i] - originY);
+    }
+    shape.endShape();
+    shapeOutline = outline;
+    shapeSize = size;
+    shapeDX = x[size / 2] - originX;
+    shapeDY = y[size / 2] - originY;
+    shapeFill = fill;
+  }
+
+  /**
+   * Draws the retained shape with its first vertex at the given point. A new color only updates
+   * the fill of the shape.
+   */
+  private void drawShape(PGraphics pg, float originX, float originY) {
+    int fill = currentFill();
+    if (fill != shapeFill) {
+      shape.setFill(fill);
+      shapeFill = fill;
+    }
+    pg.pushMatrix();
+    pg.translate(originX, originY);
+    pg.shape(shape);
+    pg.popMatrix();
+  }
+
+  /**
+   * Returns the color to fill the shape with, which is white while the marker is selected
+   */
+  private int currentFill() {
+    return this.isSelected() ? 0xFFFFFFFF : c.argb();
   }
 
   /**
@@ -65,57 +251,172 @@ public final class BuildingMarker extends SimplePolygonMarker implements Compara
    */
   public void newColor(Color c) {
     this.c = c;
+    this.level = NO_LEVEL;
+  }
+
+  /**
+   * Gives the marker the color of the given level, unless it already has that level
+   *
+   * @param level   the rank of the building, or {@link #DOWNED_LEVEL}
+   * @param palette the colors of the ranks, from {@link #palette(int)}
+   */
+  void newLevel(int level, Color[] palette) {
+    if (level != this.level) {
+      this.c = level == DOWNED_LEVEL ? DOWNED : palette[level];
+      this.level = level;
+    }
+  }
+
+  /**
+   * Returns the fill color
+   * @return the current fill color
+   */
+  Color color() {
+    return c;
+  }
+
+  /**
+   * Returns the colors for every rank when balancing the given number of markers, from yellow
+   * for the lowest to red for the highest. The colors are only created again when the number
+   * changes, and must not be changed as they are shared.
+   *
+   * @param count the number of markers being balanced
+   * @return the color of each rank
+   */
+  static Color[] palette(int count) {
+    Color[] result = palette;
+    if (result.length != count) {
+      result = new Color[count];
+      int diff = count > 0 ? 255 / count : 0;
+      for (int i = 0; i < count; i++) {
+        result[i] = new Color(255, 255 - (diff * i), 0, 175);
+      }
+      palette = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the color of a building in a snapshot: the color of its rank, or the downed color
+   * if its meters were down.
+   *
+   * @param snapshot the snapshot
+   * @param index    the index of the building in the snapshot
+   * @param palette  the colors of the ranks, from {@link #palette(int)}
+   * @return the color of the building
+   */
+  static Color colorOf(CampusSnapshot snapshot, int index, Color[] palette) {
+    return snapshot.isDown(index) ? DOWNED : palette[snapshot.rank(index)];
+  }
+
+  /**
+   * Returns the level of a building in a snapshot: its rank, or {@link #DOWNED_LEVEL} if its
+   * meters were down.
+   *
+   * @param snapshot the snapshot
+   * @param index    the index of the building in the snapshot
+   * @return the level of the building
+   */
+  static int levelOf(CampusSnapshot snapshot, int index) {
+    return snapshot.isDown(index) ? DOWNED_LEVEL : snapshot.rank(index);
   }
 
   /**
    * Balances out all of the colors according to the current time, from min to max.
    *
    * @param markers the list of markers to balance out
+   * @param axis    the time axis of the buildings of the markers
    * @param time    the time to balance with
    * @throws IllegalArgumentException if there are more than 255 markers
    */
-  static void balanceColors(ArrayList<BuildingMarker> markers, long time) {
+  static void balanceColors(ArrayList<BuildingMarker> markers, TimeAxis axis, long time) {
+    balanceColors(markers, CampusSnapshot.of(buildingsOf(markers), axis, time));
+  }
+
+  /**
+   * Balances out all of the colors according to the ranks in the given snapshot, from min to
+   * max. The snapshot must have been taken of the buildings of the markers, in the same order.
+   *
+   * @param markers  the list of markers to balance out
+   * @param snapshot the snapshot of the markers' buildings to balance with
+   * @throws IllegalArgumentException if there are more than 255 markers, or the snapshot does
+   *                                  not match the markers
+   */
+  static void balanceColors(ArrayList<BuildingMarker> markers, CampusSnapshot snapshot) {
     if (markers.size() > 255) {
       throw new IllegalArgumentException("Too many markers, can only balance a total" +
               "of 255 markers");
     }
-    for (BuildingMarker marker : markers) {
-      marker.building.changeTime(time);
+    if (snapshot.size() != markers.size()) {
+      throw new IllegalArgumentException("Snapshot does not match the markers");
     }
-    Collections.sort(markers);
+    Color[] palette = palette(markers.size());
     for (int i = 0; i < markers.size(); i++) {
       BuildingMarker bm = markers.get(i);
-      if (bm.building.currentWattage() == 0) {
-        bm.newColor(new Color(0, 128, 255, 225));
-      } else {
-        int diff = 255 / markers.size();
-        bm.newColor(new Color(255, 255 - (diff * i), 0, 175));
+      if (snapshot.buildingID(i) != bm.building.buildingID()) {
+        throw new IllegalArgumentException("Snapshot does not match the markers");
       }
+      bm.newLevel(levelOf(snapshot, i), palette);
+    }
+  }
+
+  /**
+   * Balances out all of the colors according to the time of the snapshot, reading them from the
+   * given timeline once it has reached the time, and from the snapshot until then.
+   *
+   * @param markers  the list of markers to balance out
+   * @param timeline the precomputed colors of the markers
+   * @param snapshot the snapshot of the markers' buildings to balance with
+   * @throws IllegalArgumentException if there are more than 255 markers
+   */
+  static void balanceColors(ArrayList<BuildingMarker> markers, ColorTimeline timeline,
+                            CampusSnapshot snapshot) {
+    if (timeline == null || !timeline.isReady(snapshot.time())) {
+      balanceColors(markers, snapshot);
+      return;
     }
+    timeline.apply(snapshot.time());
+  }
+
+  /**
+   * Returns the buildings of the given markers, in the same order
+   *
+   * @param markers the markers
+   * @return the buildings of the markers
+   */
+  static ArrayList<Building> buildingsOf(List<BuildingMarker> markers) {
+    ArrayList<Building> result = new ArrayList<>(markers.size());
+    for (BuildingMarker marker : markers) {
+      result.add(marker.building);
+    }
+    return result;
   }
 
   /**
    * Creates an array of doubles for last specified number of readings differing among the
    * specified number of times.
+   * @param time the time to count down from
    * @param minTime the minimum point which there are no times past
    * @param timeDiff how much to offset the times by
    * @param numberOfReadings how many times to count down
    * @return the array of watts for the last specified times.
    */
-  double[] lastReadings(long minTime, long timeDiff, int numberOfReadings) {
+  double[] lastReadings(long time, long minTime, long timeDiff, int numberOfReadings) {
     if (numberOfReadings < 1) {
       throw new IllegalArgumentException("There must be a number of readings");
     }
     if (timeDiff < 1) {
       throw new IllegalArgumentException("Must have a positive integer for time difference");
     }
+    long[] times = new long[numberOfReadings];
+    for (int i = 0; i < numberOfReadings; i++) {
+      times[i] = time - (timeDiff * i);
+    }
     double[] result = new double[numberOfReadings];
+    building.wattage(times, result);
     for (int i = 0; i < numberOfReadings; i++) {
-      long time = building.currentTime() - (timeDiff * i);
-      if (time < minTime) {
+      if (times[i] < minTime) {
         result[i] = -1.0;
-      } else {
-        result[i] = building.wattage(time);
       }
     }
     return result;
@@ -156,17 +457,17 @@ public final class BuildingMarker extends SimplePolygonMarker implements Compara
 
   /**
    * Creates the string array containing the last week worth of power readings
+   * @param currentTime the time of the first reading
    * @param minTime the minimum time that there are no readings past.
    * @return the week's worth of readings in a string array.
    */
-  String[] lastWeek(long minTime) {
+  String[] lastWeek(long currentTime, long minTime) {
     String[] result = new String[7];
-    long currentTime = this.building.currentTime();
     long timeDiff = 86400;
     SimpleDateFormat sdf = new SimpleDateFormat("MMMM d");
     for (int i = 0; i < 7; i++) {
       if (i == 0) {
-        String watt = Double.toString(building.currentWattage());
+        String watt = Double.toString(building.wattage(currentTime));
         if (watt.length() > 9) {
           watt = watt.substring(0, 9);
         }
@@ -240,5 +541,13 @@ public final class BuildingMarker extends SimplePolygonMarker implements Compara
       this.b = clamp(b);
       this.alpha = clamp(alpha);
     }
+
+    /**
+     * Packs the color the way processing stores colors
+     * @return the color as an argb int
+     */
+    int argb() {
+      return (alpha << 24) | (r << 16) | (g << 8) | b;
+    }
   }
 }
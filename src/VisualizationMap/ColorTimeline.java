@@ -0,0 +1,128 @@
+package VisualizationMap;
+
+import java.util.List;
+import java.util.Objects;
+
+import Visual.CampusSnapshot;
+import Visual.OutageIndex;
+import Visual.TimeAxis;
+import Visual.TimeSeries;
+
+/**
+ * The rank of every marker for every slot of the year, computed once in the background. As the
+ * data never changes, coloring a frame only needs to read the ranks of its slot.
+ */
+final class ColorTimeline {
+  /**
+   * The level of a marker whose building has no meter reading
+   */
+  private static final byte DOWNED = (byte) 255;
+
+  private final BuildingMarker[] markers;
+  private final TimeAxis axis;
+  private final BuildingMarker.Color[] palette;
+  // levels[slot * markers.length + m] is the rank of marker m in the slot, or DOWNED
+  private final byte[] levels;
+  private volatile int computed;
+
+  /**
+   * Creates an empty timeline for the given markers
+   *
+   * @param markers the markers to color
+   * @param axis    the time axis of the buildings of the markers
+   * @throws IllegalArgumentException if there are no markers or more than 255 markers
+   */
+  ColorTimeline(List<BuildingMarker> markers, TimeAxis axis) {
+    Objects.requireNonNull(markers, "Markers must be set");
+    Objects.requireNonNull(axis, "Axis must be set");
+    if (markers.isEmpty() || markers.size() > 255) {
+      throw new IllegalArgumentException("Can only balance between 1 and 255 markers");
+    }
+    this.markers = markers.toArray(new BuildingMarker[markers.size()]);
+    this.axis = axis;
+    this.palette = BuildingMarker.palette(this.markers.length);
+    this.levels = new byte[axis.size() * this.markers.length];
+  }
+
+  /**
+   * Starts computing the timeline on a background thread
+   */
+  void start() {
+    Thread worker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        compute();
+      }
+    }, "Color timeline");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Returns whether the colors of the given time have been computed yet
+   *
+   * @param time the unix time
+   * @return true if the time can be applied
+   */
+  boolean isReady(long time) {
+    return axis.slot(time) < computed;
+  }
+
+  /**
+   * Gives every marker its color at the given time, touching only the markers whose color
+   * changed
+   *
+   * @param time the unix time
+   * @throws IllegalStateException if the time has not been computed yet
+   */
+  void apply(long time) {
+    int slot = axis.slot(time);
+    if (slot >= computed) {
+      throw new IllegalStateException("Time has not been computed yet");
+    }
+    int offset = slot * markers.length;
+    for (int m = 0; m < markers.length; m++) {
+      byte level = levels[offset + m];
+      markers[m].newLevel(level == DOWNED ? BuildingMarker.DOWNED_LEVEL : level & 0xFF, palette);
+    }
+  }
+
+  /**
+   * Ranks the markers in every slot, in order of time. Each slot starts from the order of the
+   * slot before it, so the insertion sort only moves the few markers that changed places. Ties
+   * are broken by marker index, just as a snapshot breaks them by building index.
+   */
+  private void compute() {
+    int count = markers.length;
+    TimeSeries[] series = new TimeSeries[count];
+    OutageIndex[] outages = new OutageIndex[count];
+    int[] order = new int[count];
+    double[] watts = new double[count];
+    for (int m = 0; m < count; m++) {
+      series[m] = markers[m].building.series();
+      outages[m] = markers[m].building.outages();
+      order[m] = m;
+    }
+    for (int slot = 0; slot < axis.size(); slot++) {
+      long time = axis.time(slot);
+      for (int m = 0; m < count; m++) {
+        watts[m] = series[m].get(series[m].slot(time));
+      }
+      for (int i = 1; i < count; i++) {
+        int moving = order[i];
+        int j = i - 1;
+        while (j >= 0 && CampusSnapshot.compareRanks(watts, order[j], moving) > 0) {
+          order[j + 1] = order[j];
+          j--;
+        }
+        order[j + 1] = moving;
+      }
+      int offset = slot * count;
+      for (int rank = 0; rank < count; rank++) {
+        int m = order[rank];
+        levels[offset + m] = outages[m].isDownAt(time) ? DOWNED : (byte) rank;
+      }
+      computed = slot + 1;
+    }
+  }
+}
@@ -1,20 +1,28 @@
 package VisualizationMap;
 
 import Visual.Building;
-import Visual.CsvReader;
+import Visual.Campus;
+import Visual.CampusServer;
+import Visual.CampusSnapshot;
+import Visual.CampusLoader;
+import Visual.LiveCampus;
+import Visual.MeasureFeed;
+import Visual.Playback;
 import VisualizationMap.BuildingMarker;
 import processing.core.PApplet;
 import processing.core.PFont;
+import processing.core.PGraphics;
 
 import de.fhpotsdam.unfolding.UnfoldingMap;
 import de.fhpotsdam.unfolding.geo.Location;
-import de.fhpotsdam.unfolding.marker.Marker;
 import de.fhpotsdam.unfolding.providers.Google;
 import de.fhpotsdam.unfolding.providers.Microsoft;
 import de.fhpotsdam.unfolding.utils.MapUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Hello Unfolding World.
@@ -22,17 +30,136 @@ import java.util.ArrayList;
  * Download the distribution with examples for many more examples and features.
  */
 public class HelloUnfoldingWorld extends PApplet {
+  /**
+   * The frames drawn in a second, which playback computes its frames for
+   */
+  static final float FRAME_RATE = 60;
+  /**
+   * The simulated seconds played in a second, unless --speed is given: ten readings a frame
+   */
+  static final double DEFAULT_SPEED = 9000 * FRAME_RATE;
+  /**
+   * The slowest and fastest speeds, for --speed and the '+'/'-' keys: real time, and a year of
+   * readings a second
+   */
+  static final double MIN_SPEED = 1;
+  static final double MAX_SPEED = 365.0 * 24 * 60 * 60;
 
   UnfoldingMap map;
-  ArrayList<Building> buildings;
   ArrayList<BuildingMarker> buildingMarkers;
+  ColorTimeline colorTimeline;
+  // The buildings, the time the map shows, and the buildings at that time
+  Campus campus;
+  CampusSnapshot snapshot;
+  MarkerIndex markerIndex;
   PFont myFont;
+  PFont headerFont;
+  PFont smallFont;
+  // The header and info panel, drawn again only when what they show changes
+  PGraphics overlay;
+  long overlayTime = -1;
+  BuildingMarker overlayMarker;
+  String overlayEntry;
+  InfoPanel panel;
   BuildingMarker hitMarker;
+  CampusLoader loader;
+  boolean loadFailed = false;
+  int overlayProgress = -1;
   String entry;
-  boolean cycle = false;
+  // Set while cycling through time, at the given simulated seconds per second
+  Playback playback;
+  double speed = DEFAULT_SPEED;
+  // Set when new readings are streamed in with --tail <file> or --listen <port>
+  MeasureFeed feed;
+  LiveCampus live;
+  // Set when the loaded readings are served to other tools with --serve <port>
+  CampusServer server;
 
   public static void main(String args[]) {
-    PApplet.main(new String[]{"VisualizationMap.HelloUnfoldingWorld"});
+    // Lets the --serve server send small responses without waiting on the client
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+    PApplet.main("VisualizationMap.HelloUnfoldingWorld", args);
+  }
+
+  /**
+   * Creates the feed of live readings asked for on the command line
+   * @param args the command line arguments
+   * @return the feed, or null if none was asked for or the port is malformed
+   */
+  static MeasureFeed feedOf(String[] args) {
+    if (args == null) {
+      return null;
+    }
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals("--tail")) {
+        return MeasureFeed.tail(args[i + 1]);
+      } else if (args[i].equals("--listen")) {
+        try {
+          return MeasureFeed.listen(Integer.parseInt(args[i + 1]));
+        } catch (IllegalArgumentException e) {
+          System.out.println("Error in HelloUnfoldingWorld !!!");
+          System.out.println("Not a port: " + args[i + 1]);
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads the playback speed asked for on the command line
+   * @param args the command line arguments
+   * @return the simulated seconds per second given with --speed, or the default speed if none
+   *         was given or it is not a number between MIN_SPEED and MAX_SPEED
+   */
+  static double speedOf(String[] args) {
+    if (args != null) {
+      for (int i = 0; i + 1 < args.length; i++) {
+        if (args[i].equals("--speed")) {
+          try {
+            double speed = Double.parseDouble(args[i + 1]);
+            if (speed >= MIN_SPEED && speed <= MAX_SPEED) {
+              return speed;
+            }
+          } catch (NumberFormatException e) {
+            // Reported below
+          }
+          System.out.println("Error in HelloUnfoldingWorld !!!");
+          System.out.println("Not a speed: " + args[i + 1]);
+          return DEFAULT_SPEED;
+        }
+      }
+    }
+    return DEFAULT_SPEED;
+  }
+
+  /**
+   * Reads the port to serve the loaded readings on from the command line
+   * @param args the command line arguments
+   * @return the port given with --serve, or -1 if the readings are not served or the port is
+   *         malformed
+   */
+  static int servePortOf(String[] args) {
+    if (args != null) {
+      for (int i = 0; i + 1 < args.length; i++) {
+        if (args[i].equals("--serve")) {
+          try {
+            int port = Integer.parseInt(args[i + 1]);
+            if (port >= 0 && port <= 65535) {
+              return port;
+            }
+          } catch (NumberFormatException e) {
+            // Reported below
+          }
+          System.out.println("Error in HelloUnfoldingWorld !!!");
+          System.out.println("Not a port: " + args[i + 1]);
+          return -1;
+        }
+      }
+    }
+    return -1;
   }
 
   public void setup() {
@@ -41,120 +168,288 @@ public class HelloUnfoldingWorld extends PApplet {
     map = new UnfoldingMap(this, new Google.GoogleMapProvider());
     MapUtils.createDefaultEventDispatcher(this, map);
     myFont = createFont("Arial", 16);
+    headerFont = createFont("Arial", 26);
+    smallFont = createFont("Arial", 14);
+    overlay = createGraphics(width, height, P2D);
     entry = "[Type to Start]";
-    try {
-      buildings = CsvReader.build(
-              "buildingDB.csv",
-              "siteDB.csv",
-              "measureDB_parallel.csv");
-      buildingMarkers = new ArrayList<>();
-      for (Building b : buildings) {
+    loader = new CampusLoader(
+            "buildingDB.csv",
+            "siteDB.csv",
+            "measureDB_parallel.csv");
+    if (args != null && Arrays.asList(args).contains("--compress")) {
+      loader.compress();
+    }
+    loader.start();
+    feed = feedOf(args);
+    speed = speedOf(args);
+    frameRate(FRAME_RATE);
+    Location northeasternUniversity = new Location(42.33939817882002, -71.08961267153299);
+    map.zoomAndPanTo(17, northeasternUniversity);
+    map.setZoomRange(BuildingMarker.MIN_ZOOM, BuildingMarker.MAX_ZOOM);
+    map.setPanningRestriction(northeasternUniversity, 1);
+  }
+
+  /**
+   * Picks up whatever the loader has finished since the last frame. Markers are added as soon
+   * as the outlines are ready, and start coloring once the buildings have their readings.
+   */
+  void pollLoader() {
+    if (buildingMarkers == null && loader.outlines() != null) {
+      ArrayList<BuildingMarker> markers = new ArrayList<>();
+      for (Building b : loader.outlines()) {
         BuildingMarker bm = new BuildingMarker(b);
-        buildingMarkers.add(bm);
+        markers.add(bm);
+        map.addMarker(bm);
       }
+      markerIndex = new MarkerIndex(markers);
+      buildingMarkers = markers;
+    }
+    if (campus == null && buildingMarkers != null && loader.buildings() != null) {
+      if (feed != null) {
+        live = new LiveCampus(loader.buildings());
+        campus = new Campus(live.buildings());
+        feed.start();
+      } else {
+        campus = new Campus(loader.buildings());
+      }
+      List<Building> buildings = campus.buildings();
+      for (int i = 0; i < buildings.size(); i++) {
+        buildingMarkers.get(i).attach(buildings.get(i));
+      }
+      if (live != null) {
+        // The readings keep changing, so there is no timeline to compute ahead of time
+        campus.moveTo(live.latestTime());
+      } else {
+        colorTimeline = new ColorTimeline(buildingMarkers, campus.axis());
+        colorTimeline.start();
+      }
+      snapshot = campus.snapshot();
+      BuildingMarker.balanceColors(buildingMarkers, colorTimeline, snapshot);
+      serve(campus);
+    }
+    if (loader.error() != null && !loadFailed) {
+      loadFailed = true;
+      loader.error().printStackTrace();
+    }
+  }
+
+  /**
+   * Serves the campus on screen if asked for on the command line. In live mode that is the live
+   * campus, so answers include the readings recorded since loading.
+   */
+  void serve(Campus shown) {
+    int port = servePortOf(args);
+    if (port < 0) {
+      return;
+    }
+    try {
+      server = new CampusServer(shown);
+      server.start(port);
+      System.out.println("Serving readings on port " + server.port());
     } catch (IOException e) {
+      System.out.println("Error in HelloUnfoldingWorld !!!");
       e.printStackTrace();
     }
-    for (BuildingMarker bm : buildingMarkers) {
-      map.addMarker(bm);
-    }
-    BuildingMarker.balanceColors(buildingMarkers, 1386547200);
-    Location northeasternUniversity = new Location(42.33939817882002, -71.08961267153299);
-    map.zoomAndPanTo(17, northeasternUniversity);
-    map.setZoomRange(15, 19);
-    map.setPanningRestriction(northeasternUniversity, 1);
   }
 
   public void draw() {
     background(0);
+    if (snapshot == null) {
+      pollLoader();
+    }
     map.draw();
-    if(cycle) {
-      BuildingMarker.balanceColors(buildingMarkers, buildings.get(0).currentTime() + 9000L);
-    }
-    pushStyle();
-    fill(160, 160, 160);
-    stroke(0, 102, 51);
-    strokeWeight(5);
-    rect(width / 2 - 170, 30, 400, 100);
-    textFont(createFont("Arial", 26));
-    strokeWeight(2);
-    fill(0, 0, 0);
-    text(entry, width / 2 - 15, 40, 200, 200);
-    text("'C' to cycle", 200, 200, 150, 50);
-    text(BuildingMarker.unixTostring(buildings.get(0).currentTime()), width / 2 - 150,
-            75, 400, 200);
-    textFont(createFont("Arial", 14));
-    text("Enter Date as MM/DD/YYYY:", width / 2 - 150, 40, 100, 200);
-    popStyle();
-    if (buildings.get(0).currentTime() >= 1418168700) {
-      cycle = false;
+    if (snapshot == null) {
+      int percent = (int) (loader.progress() * 100);
+      if (percent != overlayProgress || overlayTime != -1) {
+        overlayProgress = percent;
+        overlayTime = -1;
+        overlay.beginDraw();
+        overlay.clear();
+        drawLoading(overlay, percent);
+        overlay.endDraw();
+      }
+      image(overlay, 0, 0);
+      return;
+    }
+    if (live != null) {
+      pollFeed();
     }
+    if (playback != null) {
+      CampusSnapshot frame = playback.poll();
+      if (frame != null) {
+        campus.moveTo(frame.time());
+        snapshot = frame;
+        BuildingMarker.balanceColors(buildingMarkers, colorTimeline, snapshot);
+      }
+      if (playback.isFinished()) {
+        stopPlayback();
+      }
+    }
+    BuildingMarker shownMarker = null;
     if (hitMarker != null && hitMarker.isSelected()) {
-      pushStyle();
-      if (myFont != null) {
-        textFont(myFont);
-      }
-      int x = width - width / 4;
-      int y = height / 6;
-      int infoWidth = 300;
-      int infoHeight = 500;
-      fill(160, 160, 160, 255);
-      rect(x, y, infoWidth, infoHeight);
-      strokeWeight(20);
-      stroke(0, 102, 51);
-      rect(x, y, infoWidth, infoHeight);
-      fill(0, 0, 0);
-      text(hitMarker.building.name(), x + 25, y + 25, infoWidth, infoHeight);
-      text("Footprint: " + Integer.toString(hitMarker.building.footprint()),
-              x + 25, y + 50, infoWidth, infoHeight);
-      String wattage = Double.toString(hitMarker.building.currentWattage());
-      if (wattage.length() > 9) {
-        wattage = wattage.substring(0, 9);
-      }
-      text("Current Wattage: " + wattage, x + 25, y + 75, infoWidth, infoHeight);
-      text("Power usage for last seven days: ", x + 25, y + 100, infoWidth, infoHeight);
-      textFont(createFont("Arial", 14));
-      String[] times = hitMarker.lastWeek(1386547200);
-      text(times[0], x + 25, y + 125, infoWidth, infoHeight);
-      text(times[1], x + 25, y + 175, infoWidth, infoHeight);
-      text(times[2], x + 25, y + 225, infoWidth, infoHeight);
-      text(times[3], x + 25, y + 275, infoWidth, infoHeight);
-      text(times[4], x + 25, y + 325, infoWidth, infoHeight);
-      text(times[5], x + 25, y + 375, infoWidth, infoHeight);
-      text(times[6], x + 25, y + 425, infoWidth, infoHeight);
-      double[] rectangleScales = hitMarker.scaleDoubles(
-              hitMarker.lastReadings(1386547200, 86400, 7)
-      );
-      stroke(0, 0, 0);
-      strokeWeight(2);
-      fill(150, 10, 0);
-      rect(x + 50, y + 150, (int) (10 + rectangleScales[0] * 190), 20);
-      rect(x + 50, y + 200, (int) (10 + rectangleScales[1] * 190), 20);
-      rect(x + 50, y + 250, (int) (10 + rectangleScales[2] * 190), 20);
-      rect(x + 50, y + 300, (int) (10 + rectangleScales[3] * 190), 20);
-      rect(x + 50, y + 350, (int) (10 + rectangleScales[4] * 190), 20);
-      rect(x + 50, y + 400, (int)(10 + rectangleScales[5] * 190), 20);
-      rect(x + 50, y + 450, (int)(10 + rectangleScales[6] * 190), 20);
-      popStyle();
+      shownMarker = hitMarker;
+    }
+    if (overlayTime != snapshot.time() || overlayMarker != shownMarker
+            || !entry.equals(overlayEntry)) {
+      if (shownMarker != null && (panel == null || !panel.shows(shownMarker, snapshot.time()))) {
+        panel = InfoPanel.of(shownMarker, snapshot,
+                campus.indexOf(shownMarker.building.buildingID()), campus.axis().start());
+      }
+      overlayTime = snapshot.time();
+      overlayMarker = shownMarker;
+      overlayEntry = entry;
+      overlay.beginDraw();
+      overlay.clear();
+      drawHeader(overlay);
+      if (shownMarker != null) {
+        drawPanel(overlay, panel);
+      }
+      overlay.endDraw();
+    }
+    image(overlay, 0, 0);
+  }
+
+  /**
+   * Plays the readings forward from the given time at the current speed, replacing any
+   * playback that was running
+   * @param from the unix time to start at
+   */
+  void startPlayback(long from) {
+    stopPlayback();
+    playback = new Playback(campus, from, speed, FRAME_RATE);
+    playback.start();
+  }
+
+  /**
+   * Stops cycling through time, keeping the frame that was shown last
+   */
+  void stopPlayback() {
+    if (playback != null) {
+      playback.stop();
+      playback = null;
+    }
+  }
+
+  /**
+   * Records the readings that arrived since the last frame. A map showing the newest readings
+   * moves on to the newest readings, and a map showing an earlier time is colored again in case
+   * its readings changed.
+   */
+  void pollFeed() {
+    boolean following = campus.time() == campus.axis().round(live.latestTime());
+    if (live.apply(feed) > 0) {
+      // The window of readings may have moved, so the time is placed on the new axis
+      campus.moveTo(live.axis(), following ? live.latestTime() : campus.time());
+      snapshot = campus.snapshot();
+      BuildingMarker.balanceColors(buildingMarkers, colorTimeline, snapshot);
+      panel = null;
+      overlayTime = -1;
     }
   }
 
+  /**
+   * Draws the header bar with the progress of the loader
+   * @param pg the graphics to draw on
+   * @param percent how much of the data has been loaded
+   */
+  void drawLoading(PGraphics pg, int percent) {
+    pg.pushStyle();
+    pg.fill(160, 160, 160);
+    pg.stroke(0, 102, 51);
+    pg.strokeWeight(5);
+    pg.rect(width / 2 - 170, 30, 400, 100);
+    pg.textFont(headerFont);
+    pg.fill(0, 0, 0);
+    String status = loadFailed ? "Failed to load data" : "Loading data: " + percent + "%";
+    pg.text(status, width / 2 - 150, 50, 400, 200);
+    pg.noStroke();
+    pg.fill(150, 10, 0);
+    pg.rect(width / 2 - 150, 95, 360 * percent / 100, 20);
+    pg.popStyle();
+  }
+
+  /**
+   * Draws the header bar with the typed entry and the current time
+   * @param pg the graphics to draw on
+   */
+  void drawHeader(PGraphics pg) {
+    pg.pushStyle();
+    pg.fill(160, 160, 160);
+    pg.stroke(0, 102, 51);
+    pg.strokeWeight(5);
+    pg.rect(width / 2 - 170, 30, 400, 100);
+    pg.textFont(headerFont);
+    pg.strokeWeight(2);
+    pg.fill(0, 0, 0);
+    pg.text(entry, width / 2 - 15, 40, 200, 200);
+    pg.text("'C' to cycle", 200, 200, 150, 50);
+    pg.text("'+'/'-' for speed", 200, 240, 250, 50);
+    pg.text(BuildingMarker.unixTostring(snapshot.time()), width / 2 - 150,
+            75, 400, 200);
+    pg.textFont(smallFont);
+    pg.text("Enter Date as MM/DD/YYYY:", width / 2 - 150, 40, 100, 200);
+    pg.popStyle();
+  }
+
+  /**
+   * Draws the info panel of the hovered building
+   * @param pg the graphics to draw on
+   * @param info the contents of the panel
+   */
+  void drawPanel(PGraphics pg, InfoPanel info) {
+    pg.pushStyle();
+    if (myFont != null) {
+      pg.textFont(myFont);
+    }
+    int x = width - width / 4;
+    int y = height / 6;
+    int infoWidth = 300;
+    int infoHeight = 500;
+    pg.fill(160, 160, 160, 255);
+    pg.rect(x, y, infoWidth, infoHeight);
+    pg.strokeWeight(20);
+    pg.stroke(0, 102, 51);
+    pg.rect(x, y, infoWidth, infoHeight);
+    pg.fill(0, 0, 0);
+    pg.text(info.name, x + 25, y + 25, infoWidth, infoHeight);
+    pg.text(info.footprint, x + 25, y + 50, infoWidth, infoHeight);
+    pg.text(info.wattage, x + 25, y + 75, infoWidth, infoHeight);
+    pg.text("Power usage for last seven days: ", x + 25, y + 100, infoWidth, infoHeight);
+    pg.textFont(smallFont);
+    for (int i = 0; i < info.week.length; i++) {
+      pg.text(info.week[i], x + 25, y + 125 + 50 * i, infoWidth, infoHeight);
+    }
+    pg.stroke(0, 0, 0);
+    pg.strokeWeight(2);
+    pg.fill(150, 10, 0);
+    for (int i = 0; i < info.scales.length; i++) {
+      pg.rect(x + 50, y + 150 + 50 * i, (int) (10 + info.scales[i] * 190), 20);
+    }
+    pg.popStyle();
+  }
+
   public void mouseMoved() {
-    Marker foundMarker = map.getFirstHitMarker(mouseX, mouseY);
-    if (foundMarker != null && foundMarker instanceof BuildingMarker) {
-      hitMarker = (BuildingMarker) foundMarker;
-      for (Marker marker : map.getMarkers()) {
-        marker.setSelected(false);
+    if (markerIndex == null) {
+      return;
+    }
+    Location location = map.getLocation(mouseX, mouseY);
+    BuildingMarker foundMarker = markerIndex.find(location.getLat(), location.getLon(),
+            map.getZoomLevel());
+    if (foundMarker != hitMarker) {
+      if (hitMarker != null) {
+        hitMarker.setSelected(false);
       }
-      hitMarker.setSelected(true);
-    } else {
-      for (Marker marker : map.getMarkers()) {
-        marker.setSelected(false);
+      hitMarker = foundMarker;
+      if (hitMarker != null) {
+        hitMarker.setSelected(true);
       }
     }
   }
 
   public void keyPressed() {
+    if (snapshot == null) {
+      return;
+    }
     if (entry.equals("[Type to Start]")) {
       entry = "";
     }
@@ -163,10 +458,25 @@ public class HelloUnfoldingWorld extends PApplet {
     } else if ((key == BACKSPACE || key == DELETE)&& entry.length() > 0) {
       entry = entry.substring(0, entry.length() - 1);
     } else if ((key == ENTER || key == RETURN)&& entry.length() == 10) {
-      BuildingMarker.balanceColors(buildingMarkers, BuildingMarker.stringToUnix(entry));
+      campus.moveTo(BuildingMarker.stringToUnix(entry));
+      snapshot = campus.snapshot();
+      BuildingMarker.balanceColors(buildingMarkers, colorTimeline, snapshot);
       entry = "";
+      if (playback != null) {
+        startPlayback(campus.time());
+      }
     } else if ((key == 'c') || key == 'C') {
-      cycle = !(cycle);
+      // Live readings change the buildings under the playback thread, so only the past cycles
+      if (playback != null) {
+        stopPlayback();
+      } else if (live == null) {
+        startPlayback(campus.time());
+      }
+    } else if (key == '+' || key == '-') {
+      speed = key == '+' ? Math.min(MAX_SPEED, speed * 2) : Math.max(MIN_SPEED, speed / 2);
+      if (playback != null) {
+        startPlayback(campus.time());
+      }
     } else {}
   }
 }
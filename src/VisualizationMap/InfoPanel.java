@@ -0,0 +1,65 @@
+package VisualizationMap;
+
+import java.util.Objects;
+
+import Visual.CampusSnapshot;
+
+/**
+ * The text and bar lengths shown in the info panel of a building at a point in time. Computing
+ * them reads a week of history, so a panel is kept for as long as the same building is shown at
+ * the same time.
+ */
+final class InfoPanel {
+  final BuildingMarker marker;
+  final long time;
+  final String name;
+  final String footprint;
+  final String wattage;
+  final String[] week;
+  final double[] scales;
+
+  private InfoPanel(BuildingMarker marker, long time, String name, String footprint,
+                    String wattage, String[] week, double[] scales) {
+    this.marker = marker;
+    this.time = time;
+    this.name = name;
+    this.footprint = footprint;
+    this.wattage = wattage;
+    this.week = week;
+    this.scales = scales;
+  }
+
+  /**
+   * Computes the panel of the given marker at the time of the snapshot
+   *
+   * @param marker   the marker to show
+   * @param snapshot the snapshot of the campus
+   * @param index    the index of the building of the marker in the snapshot
+   * @param minTime  the minimum time that there are no readings past
+   * @return the panel
+   */
+  static InfoPanel of(BuildingMarker marker, CampusSnapshot snapshot, int index, long minTime) {
+    Objects.requireNonNull(marker, "Marker must be set");
+    long time = snapshot.time();
+    String wattage = Double.toString(snapshot.wattage(index));
+    if (wattage.length() > 9) {
+      wattage = wattage.substring(0, 9);
+    }
+    return new InfoPanel(marker, time, marker.building.name(),
+            "Footprint: " + Integer.toString(marker.building.footprint()),
+            "Current Wattage: " + wattage,
+            marker.lastWeek(time, minTime),
+            marker.scaleDoubles(marker.lastReadings(time, minTime, 86400, 7)));
+  }
+
+  /**
+   * Returns whether this panel shows the given marker at the given time
+   *
+   * @param marker the marker
+   * @param time   the unix time
+   * @return true if this panel can be shown again
+   */
+  boolean shows(BuildingMarker marker, long time) {
+    return this.marker == marker && this.time == time;
+  }
+}
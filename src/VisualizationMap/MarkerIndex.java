@@ -0,0 +1,129 @@
+package VisualizationMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import Visual.PackedPolygon;
+
+/**
+ * A uniform grid over the outlines of the building markers, used to find the marker under the
+ * mouse. Only the markers registered in the grid cell of a location are tested, first against
+ * the bounding box of their packed outline and then against the outline simplified for the zoom
+ * level of the map.
+ */
+final class MarkerIndex {
+  private final BuildingMarker[] markers;
+  private final PackedPolygon[] outlines;
+  private final double originLat;
+  private final double originLon;
+  private final double cellLat;
+  private final double cellLon;
+  private final int side;
+  // cells[row * side + column] holds the indices of the markers overlapping the cell, in order
+  private final int[][] cells;
+
+  /**
+   * Builds the index over the outlines of the given markers
+   *
+   * @param markers the markers to index
+   */
+  MarkerIndex(List<BuildingMarker> markers) {
+    Objects.requireNonNull(markers, "Markers must be set");
+    int count = markers.size();
+    this.markers = markers.toArray(new BuildingMarker[count]);
+    outlines = new PackedPolygon[count];
+    double south = Double.POSITIVE_INFINITY;
+    double north = Double.NEGATIVE_INFINITY;
+    double west = Double.POSITIVE_INFINITY;
+    double east = Double.NEGATIVE_INFINITY;
+    for (int m = 0; m < count; m++) {
+      outlines[m] = this.markers[m].building.packedOutline();
+      if (outlines[m].size() > 0) {
+        south = Math.min(south, minLat(m));
+        north = Math.max(north, maxLat(m));
+        west = Math.min(west, minLon(m));
+        east = Math.max(east, maxLon(m));
+      }
+    }
+    if (south > north) {
+      south = 0;
+      north = 0;
+      west = 0;
+      east = 0;
+    }
+    side = Math.max(1, (int) Math.ceil(Math.sqrt(count)));
+    originLat = south;
+    originLon = west;
+    cellLat = Math.max((north - south) / side, Double.MIN_NORMAL);
+    cellLon = Math.max((east - west) / side, Double.MIN_NORMAL);
+    List<List<Integer>> lists = new ArrayList<>(side * side);
+    for (int i = 0; i < side * side; i++) {
+      lists.add(new ArrayList<Integer>());
+    }
+    for (int m = 0; m < count; m++) {
+      if (outlines[m].size() == 0) {
+        continue;
+      }
+      for (int row = row(minLat(m)); row <= row(maxLat(m)); row++) {
+        for (int column = column(minLon(m)); column <= column(maxLon(m)); column++) {
+          lists.get(row * side + column).add(m);
+        }
+      }
+    }
+    cells = new int[side * side][];
+    for (int i = 0; i < cells.length; i++) {
+      List<Integer> list = lists.get(i);
+      cells[i] = new int[list.size()];
+      for (int j = 0; j < cells[i].length; j++) {
+        cells[i][j] = list.get(j);
+      }
+    }
+  }
+
+  /**
+   * Finds the first marker, in the order they were given, whose outline contains the location
+   *
+   * @param lat  the latitude of the location
+   * @param lon  the longitude of the location
+   * @param zoom the zoom level of the map, which decides which simplified outlines are tested
+   * @return the marker at the location, or null if there is none
+   */
+  BuildingMarker find(float lat, float lon, int zoom) {
+    if (lat < originLat || lon < originLon
+            || lat > originLat + cellLat * side || lon > originLon + cellLon * side) {
+      return null;
+    }
+    for (int m : cells[row(lat) * side + column(lon)]) {
+      if (markers[m].outline(zoom).contains(lon, lat)) {
+        return markers[m];
+      }
+    }
+    return null;
+  }
+
+  private int row(double lat) {
+    return Math.min(side - 1, Math.max(0, (int) ((lat - originLat) / cellLat)));
+  }
+
+  private int column(double lon) {
+    return Math.min(side - 1, Math.max(0, (int) ((lon - originLon) / cellLon)));
+  }
+
+  // The locations of the map hold the longitude of an outline as their latitude
+  private double minLat(int m) {
+    return outlines[m].minLongitude();
+  }
+
+  private double maxLat(int m) {
+    return outlines[m].maxLongitude();
+  }
+
+  private double minLon(int m) {
+    return outlines[m].minLat();
+  }
+
+  private double maxLon(int m) {
+    return outlines[m].maxLat();
+  }
+}
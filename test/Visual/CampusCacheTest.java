@@ -0,0 +1,182 @@
+package Visual;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Tests that the buildings loaded from a CampusCache are the buildings it was written from, and
+ * that a cache is only trusted while its version and sources match
+ */
+public class CampusCacheTest {
+  private static final long START = 1386547200;
+  private static final long STEP = 900;
+  private static final int ROWS = 300;
+
+  public static void main(String[] args) throws IOException {
+    File directory = Files.createTempDirectory("campus").toFile();
+    String buildingName = new File(directory, "buildingDB.csv").getPath();
+    String siteName = new File(directory, "siteDB.csv").getPath();
+    String measureName = new File(directory, "measureDB.csv").getPath();
+    String cacheName = CampusCache.cacheName(buildingName);
+    try {
+      writeSources(buildingName, siteName, measureName);
+      Check.isTrue(!new File(cacheName).exists(), "no cache at first");
+      List<Building> built = CampusCache.build(buildingName, siteName, measureName);
+      Check.isTrue(new File(cacheName).isFile(), "a cache is written");
+      List<Building> loaded = CampusCache.load(cacheName, buildingName, siteName, measureName);
+      Check.isTrue(loaded != null, "the cache is loaded");
+      sameBuildings(built, loaded);
+
+      touched(cacheName, buildingName, siteName, measureName);
+      versions(cacheName, buildingName, siteName, measureName);
+
+      try (Writer out = new FileWriter(siteName, true)) {
+        out.write("3,Extra,EX,1\n");
+      }
+      Check.isTrue(CampusCache.load(cacheName, buildingName, siteName, measureName) == null,
+              "a changed source makes the cache stale");
+
+      CampusCache.build(buildingName, siteName, measureName);
+      try (RandomAccessFile file = new RandomAccessFile(cacheName, "rw")) {
+        file.setLength(file.length() / 2);
+      }
+      Check.fails(IOException.class,
+          () -> CampusCache.load(cacheName, buildingName, siteName, measureName),
+          "a truncated cache");
+      Check.isTrue(CampusCache.load(new File(directory, "none").getPath(), buildingName,
+              siteName, measureName) == null, "a missing cache");
+    } finally {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+    Check.done("CampusCacheTest");
+  }
+
+  /**
+   * A source that was only touched is still trusted, and its new time is kept in the cache
+   */
+  private static void touched(String cacheName, String buildingName, String siteName,
+                              String measureName) throws IOException {
+    File building = new File(buildingName);
+    Check.isTrue(building.setLastModified(building.lastModified() + 60000), "touch a source");
+    Check.isTrue(CampusCache.load(cacheName, buildingName, siteName, measureName) != null,
+            "a touched source keeps the cache");
+    try (RandomAccessFile file = new RandomAccessFile(cacheName, "r")) {
+      file.seek(16);
+      Check.equal(building.lastModified(), file.readLong(), "the touched time is recorded");
+    }
+  }
+
+  /**
+   * A cache written by another version of the format, or not a cache at all, is not read
+   */
+  private static void versions(String cacheName, String buildingName, String siteName,
+                               String measureName) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(cacheName, "rw")) {
+      file.seek(4);
+      file.writeInt(CampusCache.VERSION + 1);
+    }
+    Check.isTrue(CampusCache.load(cacheName, buildingName, siteName, measureName) == null,
+            "a newer version is not read");
+    try (RandomAccessFile file = new RandomAccessFile(cacheName, "rw")) {
+      file.seek(4);
+      file.writeInt(CampusCache.VERSION - 1);
+    }
+    Check.isTrue(CampusCache.load(cacheName, buildingName, siteName, measureName) == null,
+            "an older version is not read");
+    CampusCache.build(buildingName, siteName, measureName);
+    Check.isTrue(CampusCache.load(cacheName, buildingName, siteName, measureName) != null,
+            "building again replaces an old version");
+    try (RandomAccessFile file = new RandomAccessFile(cacheName, "rw")) {
+      file.writeInt(0);
+    }
+    Check.isTrue(CampusCache.load(cacheName, buildingName, siteName, measureName) == null,
+            "not a cache");
+    try (RandomAccessFile file = new RandomAccessFile(cacheName, "rw")) {
+      file.setLength(12);
+    }
+    Check.isTrue(CampusCache.load(cacheName, buildingName, siteName, measureName) == null,
+            "too short for a key");
+  }
+
+  private static void sameBuildings(List<Building> expected, List<Building> actual) {
+    Check.equal(expected.size(), actual.size(), "buildings");
+    for (int i = 0; i < expected.size(); i++) {
+      Building e = expected.get(i);
+      Building a = actual.get(i);
+      String what = "building " + e.buildingID();
+      Check.equal(e.buildingID(), a.buildingID(), what + " id");
+      Check.isTrue(e.name().equals(a.name()), what + " name");
+      Check.equal(e.footprint(), a.footprint(), what + " footprint");
+      Check.equal(e.perimeter(), a.perimeter(), what + " perimeter");
+      Check.same(e.area(), a.area(), what + " area");
+      Check.same(e.centroid().lat(), a.centroid().lat(), what + " centroid");
+      Check.same(e.centroid().longitude(), a.centroid().longitude(), what + " centroid");
+      PackedPolygon outline = e.packedOutline();
+      Check.equal(outline.size(), a.packedOutline().size(), what + " outline");
+      for (int p = 0; p < outline.size(); p++) {
+        Check.same(outline.lat(p), a.packedOutline().lat(p), what + " outline point " + p);
+        Check.same(outline.longitude(p), a.packedOutline().longitude(p),
+                what + " outline point " + p);
+      }
+      Check.equal(e.sites().length, a.sites().length, what + " sites");
+      for (int s = 0; s < e.sites().length; s++) {
+        Check.equal(e.sites()[s].siteID(), a.sites()[s].siteID(), what + " site id");
+        Check.equal(e.sites()[s].buildingID(), a.sites()[s].buildingID(), what + " site owner");
+        sameSeries(e.sites()[s].series(), a.sites()[s].series(), what + " site " + s);
+      }
+      sameSeries(e.series(), a.series(), what);
+    }
+  }
+
+  private static void sameSeries(TimeSeries expected, TimeSeries actual, String what) {
+    Check.isTrue(expected.axis().equals(actual.axis()), what + " axis");
+    for (int slot = 0; slot < expected.size(); slot++) {
+      Check.isTrue(expected.isSet(slot) == actual.isSet(slot), what + " set at " + slot);
+      Check.same(expected.get(slot), actual.get(slot), what + " reading at " + slot);
+    }
+  }
+
+  /**
+   * Writes two buildings, one with two sites, and readings with some gaps
+   */
+  private static void writeSources(String buildingName, String siteName, String measureName)
+          throws IOException {
+    try (Writer out = new FileWriter(buildingName)) {
+      out.write("bID,Name,Primary Use,Floors,Year Acquired,Perimeter,Area,Footprint,Centroid,"
+              + "Outline\n");
+      out.write("0,Barletta,Athletic Facility,3,1954,342,23438.77741,6269,"
+              + "\"[-71.0896, 42.3393]\",\"[[-71.0901, 42.3394], [-71.0894, 42.3396], "
+              + "[-71.0892, 42.3392], [-71.0901, 42.3394]]\"\n");
+      out.write("1,Behrakis,Classroom/Admin.,9,2002,157,11573.02118,1301,"
+              + "\"[-71.0912, 42.3369]\",\"[[-71.0911, 42.3368], [-71.0918, 42.3369], "
+              + "[-71.0914, 42.3370], [-71.0911, 42.3368]]\"\n");
+    }
+    try (Writer out = new FileWriter(siteName)) {
+      out.write("sID,Name,Abbreviation,bID\n");
+      out.write("0,Barletta Natatorium,BN,0\n");
+      out.write("1,Behrakis Center,BK,1\n");
+      out.write("2,Behrakis Annex,BA,1\n");
+    }
+    try (Writer out = new FileWriter(measureName)) {
+      out.write("time,s0,s1,s2\n");
+      for (int row = 0; row < ROWS; row++) {
+        out.write(Long.toString(START + row * STEP));
+        for (int site = 0; site < 3; site++) {
+          out.write(',');
+          if ((row + site) % 7 != 0) {
+            out.write(Double.toString(row * 1.5 + site / 8.0));
+          }
+        }
+        out.write('\n');
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package Visual;
+
+/**
+ * The assertions the tests share. There is no test framework on the class path, so each test
+ * class is a program that runs its cases in main and throws an AssertionError at the first
+ * failure.
+ */
+final class Check {
+  private static int passed;
+
+  private Check() {
+  }
+
+  /**
+   * Checks that the condition holds
+   *
+   * @param condition the condition
+   * @param what      what is being checked, for the failure message
+   */
+  static void isTrue(boolean condition, String what) {
+    if (!condition) {
+      throw new AssertionError(what);
+    }
+    passed++;
+  }
+
+  /**
+   * Checks that the two longs are equal
+   */
+  static void equal(long expected, long actual, String what) {
+    isTrue(expected == actual, what + ": expected " + expected + " but was " + actual);
+  }
+
+  /**
+   * Checks that the two doubles are equal to within the given difference
+   */
+  static void near(double expected, double actual, double delta, String what) {
+    isTrue(Math.abs(expected - actual) <= delta,
+            what + ": expected " + expected + " but was " + actual);
+  }
+
+  /**
+   * Checks that the two doubles have the same bits, so that NaN equals NaN and 0.0 does not
+   * equal -0.0
+   */
+  static void same(double expected, double actual, String what) {
+    isTrue(Double.doubleToRawLongBits(expected) == Double.doubleToRawLongBits(actual),
+            what + ": expected " + expected + " but was " + actual);
+  }
+
+  /**
+   * Checks that running the given code throws the given type of exception
+   *
+   * @param type the exception expected
+   * @param code the code to run
+   * @param what what is being checked, for the failure message
+   */
+  static void fails(Class<? extends Exception> type, Failing code, String what) {
+    try {
+      code.run();
+    } catch (Exception e) {
+      isTrue(type.isInstance(e), what + ": threw " + e);
+      return;
+    }
+    throw new AssertionError(what + ": threw nothing");
+  }
+
+  /**
+   * Prints how many checks the given test passed
+   *
+   * @param test the name of the test
+   */
+  static void done(String test) {
+    System.out.println(test + ": " + passed + " checks passed");
+    passed = 0;
+  }
+
+  /**
+   * Code that is expected to throw
+   */
+  interface Failing {
+    void run() throws Exception;
+  }
+}
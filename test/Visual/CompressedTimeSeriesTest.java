@@ -0,0 +1,109 @@
+package Visual;
+
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+/**
+ * Tests that CompressedTimeSeries gives back every reading it was made from, whichever way its
+ * blocks end up encoded
+ */
+public class CompressedTimeSeriesTest {
+  private static final long START = 1386547200;
+  private static final long STEP = 900;
+
+  public static void main(String[] args) {
+    Random random = new Random(19);
+    for (int size : new int[] {1, 2, 127, 128, 129, 300}) {
+      ArrayTimeSeries decimals = series(size);
+      ArrayTimeSeries noise = series(size);
+      ArrayTimeSeries repeated = series(size);
+      for (int slot = 0; slot < size; slot++) {
+        if (random.nextInt(10) > 0) {
+          decimals.set(slot, (random.nextInt(2000000) - 1000) / 1000.0);
+          noise.set(slot, random.nextGaussian() * 1e5);
+          repeated.set(slot, slot < size / 2 ? 42.5 : Math.PI);
+        }
+      }
+      roundTrip(decimals, "decimals of " + size);
+      roundTrip(noise, "noise of " + size);
+      roundTrip(repeated, "repeats of " + size);
+      roundTrip(series(size), "all unset of " + size);
+    }
+    edgeValues();
+    ranges();
+    Check.done("CompressedTimeSeriesTest");
+  }
+
+  /**
+   * Readings that are not plain decimals are kept bit for bit
+   */
+  static void edgeValues() {
+    double[] edges = {0.0, -0.0, Double.MIN_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE,
+      1e15 + 0.5, (1L << 52) + 1, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.1 + 0.2};
+    ArrayTimeSeries series = series(edges.length * 2);
+    for (int i = 0; i < edges.length; i++) {
+      series.set(2 * i, edges[i]);
+    }
+    roundTrip(series, "edge values");
+    ArrayTimeSeries one = series(1);
+    one.set(0, -0.0);
+    roundTrip(one, "a single -0.0");
+  }
+
+  /**
+   * Reads and views that start and end around the block edges match the original
+   */
+  static void ranges() {
+    ArrayTimeSeries series = series(400);
+    for (int slot = 0; slot < 400; slot += 3) {
+      series.set(slot, slot * 1.25);
+    }
+    CompressedTimeSeries compressed = CompressedTimeSeries.of(series);
+    int[] edges = {0, 1, 127, 128, 129, 255, 256, 257, 399, 400};
+    for (int from : edges) {
+      for (int to : edges) {
+        if (from > to) {
+          continue;
+        }
+        double[] expected = new double[to - from + 2];
+        double[] actual = new double[to - from + 2];
+        series.read(from, expected, 1, to - from);
+        compressed.read(from, actual, 1, to - from);
+        DoubleBuffer view = compressed.view(from, to);
+        Check.equal(to - from, view.remaining(), "view length of [" + from + ", " + to + ")");
+        for (int i = 0; i < actual.length; i++) {
+          Check.same(expected[i], actual[i], "read of [" + from + ", " + to + ") at " + i);
+        }
+        for (int slot = from; slot < to; slot++) {
+          Check.same(series.isSet(slot) ? series.get(slot) : Double.NaN, view.get(),
+                  "view of [" + from + ", " + to + ") at " + slot);
+        }
+      }
+    }
+    Check.fails(IndexOutOfBoundsException.class, () -> compressed.get(400), "slot past the end");
+    Check.fails(IndexOutOfBoundsException.class, () -> compressed.get(-1), "negative slot");
+    Check.fails(IndexOutOfBoundsException.class, () -> compressed.view(5, 4), "backwards view");
+    Check.fails(IndexOutOfBoundsException.class,
+        () -> compressed.read(399, new double[2], 0, 2), "read past the end");
+  }
+
+  private static void roundTrip(TimeSeries series, String what) {
+    CompressedTimeSeries compressed = CompressedTimeSeries.of(series);
+    Check.isTrue(series.axis().equals(compressed.axis()), what + ": axis");
+    // Reading backwards defeats the decoded block kept for nearby slots
+    for (int slot = series.size() - 1; slot >= 0; slot--) {
+      Check.equal(series.isSet(slot) ? 1 : 0, compressed.isSet(slot) ? 1 : 0,
+              what + ": set at " + slot);
+      Check.same(series.get(slot), compressed.get(slot), what + ": reading at " + slot);
+    }
+    double[] values = new double[series.size()];
+    compressed.read(0, values, 0, values.length);
+    for (int slot = 0; slot < values.length; slot++) {
+      Check.same(series.get(slot), values[slot], what + ": read at " + slot);
+    }
+  }
+
+  private static ArrayTimeSeries series(int size) {
+    return new ArrayTimeSeries(START, START + STEP * (size - 1), STEP);
+  }
+}
@@ -0,0 +1,133 @@
+package Visual;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Tests that the numbers CsvTokenizer parses in place match the JDK, on both sides of the limit
+ * of its fast path, and how it splits fields
+ */
+public class CsvTokenizerTest {
+  public static void main(String[] args) {
+    fastDoubles();
+    slowDoubles();
+    longs();
+    fields();
+    ascii();
+    Check.done("CsvTokenizerTest");
+  }
+
+  /**
+   * Decimals of up to fifteen digits are computed from their digits, and must round the same
+   */
+  static void fastDoubles() {
+    Random random = new Random(4);
+    for (int i = 0; i < 200000; i++) {
+      int digits = 1 + random.nextInt(15);
+      StringBuilder number = new StringBuilder();
+      if (random.nextInt(4) == 0) {
+        number.append('-');
+      }
+      for (int d = 0; d < digits; d++) {
+        number.append((char) ('0' + random.nextInt(10)));
+      }
+      if (random.nextBoolean()) {
+        number.insert(number.length() - random.nextInt(digits), '.');
+      }
+      matchesJdk(number.toString());
+    }
+    for (String number : new String[] {"0", "-0", "0.0", "-0.0", "+1", ".5", "5.", "007",
+      "0.1", "0.3", "2.675", "999999999999999", "0.000000000000000000001",
+      "123456789012345", "1234567890.12345", "9007199254740993"}) {
+      matchesJdk(number);
+    }
+  }
+
+  /**
+   * Anything the fast path cannot compute exactly goes through the JDK
+   */
+  static void slowDoubles() {
+    for (String number : new String[] {"1234567890123456", "0.1234567890123456789",
+      "1e5", "-2.5E-3", "NaN", "Infinity", "-Infinity", "0x1p3",
+      "0.00000000000000000000001", "1.7976931348623157e308"}) {
+      matchesJdk(number);
+    }
+    Check.same(42.5, parse(" \"42.5\" "), "spaces and quotations around a number");
+    Check.same(-3, parse("-3  "), "trailing spaces");
+    for (String bad : new String[] {"", " ", "\"\"", "-", "+", ".", "1.2.3", "1,5", "abc",
+      "--1"}) {
+      Check.fails(NumberFormatException.class, () -> parse(bad), "not a number: " + bad);
+    }
+  }
+
+  static void longs() {
+    Check.equal(0, CsvTokenizer.parseLong("0", 0, 1), "zero");
+    Check.equal(-1386547200, CsvTokenizer.parseLong("-1386547200", 0, 11), "a negative time");
+    Check.equal(1386547200, CsvTokenizer.parseLong("x\"1386547200\"x", 1, 13), "quoted");
+    Check.equal(999999999999999999L,
+            CsvTokenizer.parseLong("999999999999999999", 0, 18), "eighteen digits");
+    for (String bad : new String[] {"", "-", "1.0", "1e3", " 12 3", "1000000000000000000"}) {
+      Check.fails(NumberFormatException.class,
+          () -> CsvTokenizer.parseLong(bad, 0, bad.length()), "not a whole number: " + bad);
+    }
+    CsvTokenizer cells = new CsvTokenizer().reset("2147483647,2147483648");
+    cells.next();
+    Check.equal(Integer.MAX_VALUE, cells.parseInt(), "the largest int");
+    cells.next();
+    Check.fails(NumberFormatException.class, cells::parseInt, "past the largest int");
+  }
+
+  /**
+   * Commas split fields except between quotations or the given brackets
+   */
+  static void fields() {
+    CsvTokenizer cells = new CsvTokenizer().reset("1,\"a, b\",,3,");
+    String[] expected = {"1", "a, b", "", "3", ""};
+    for (String field : expected) {
+      Check.isTrue(cells.next(), "another field for " + field);
+      Check.isTrue(field.equals(cells.string()), "field " + field + " was " + cells.string());
+      Check.isTrue(cells.isEmpty() == field.isEmpty(), "emptiness of " + field);
+    }
+    Check.isTrue(!cells.next(), "no field after the trailing one");
+    Check.isTrue(!cells.next(), "still no field");
+    Check.isTrue(new CsvTokenizer().reset("").next(), "an empty line has one field");
+    CsvTokenizer brackets = new CsvTokenizer('[', ']').reset("7,[[1,2],[3,4]],8", 2, 17);
+    brackets.next();
+    Check.isTrue("[[1,2],[3,4]]".equals(brackets.string()), "nested brackets");
+    brackets.next();
+    Check.equal(8, brackets.parseLong(), "the field after the brackets");
+    Check.isTrue(!brackets.next(), "the end of the range");
+    Check.fails(IndexOutOfBoundsException.class, () -> new CsvTokenizer().reset("ab", 1, 3),
+            "a range past the end");
+  }
+
+  /**
+   * Fields of a byte buffer read the same as the fields of a string
+   */
+  static void ascii() {
+    String line = "1386547200,12.5,,\"-0.25\"";
+    ByteBuffer bytes = ByteBuffer.wrap(("skipped\n" + line).getBytes(StandardCharsets.US_ASCII));
+    bytes.position(8);
+    CharSequence chars = CsvTokenizer.ascii(bytes);
+    Check.isTrue(line.equals(chars.toString()), "the characters of the buffer");
+    CsvTokenizer cells = new CsvTokenizer().reset(chars);
+    cells.next();
+    Check.equal(1386547200, cells.parseLong(), "a time from bytes");
+    cells.next();
+    Check.same(12.5, cells.parseDouble(), "a reading from bytes");
+    cells.next();
+    Check.isTrue(cells.isEmpty(), "an empty field from bytes");
+    cells.next();
+    Check.same(-0.25, cells.parseDouble(), "a quoted reading from bytes");
+    Check.isTrue("1386547200".equals(chars.subSequence(0, 10).toString()), "a subsequence");
+  }
+
+  private static void matchesJdk(String number) {
+    Check.same(Double.parseDouble(number), parse(number), number);
+  }
+
+  private static double parse(String number) {
+    return CsvTokenizer.parseDouble(number, 0, number.length());
+  }
+}
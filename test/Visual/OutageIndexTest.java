@@ -0,0 +1,185 @@
+package Visual;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the outages OutageIndex finds against a scan of the readings, with runs that start and
+ * end on the edges of the words of its bitmap, and as bits change one reading at a time
+ */
+public class OutageIndexTest {
+  private static final long START = 1386547200;
+  private static final long STEP = 900;
+
+  public static void main(String[] args) {
+    wordEdges();
+    noReadings();
+    allReadings();
+    marks();
+    buildings();
+    times();
+    Check.done("OutageIndexTest");
+  }
+
+  /**
+   * Runs that start or end on either side of a word edge are found whole
+   */
+  static void wordEdges() {
+    int[][] runs = {{0, 1}, {63, 64}, {65, 66}, {127, 129}, {191, 192}, {199, 200}};
+    ArrayTimeSeries series = series(200);
+    for (int slot = 0; slot < 200; slot++) {
+      series.set(slot, 1);
+    }
+    for (int[] run : runs) {
+      for (int slot = run[0]; slot < run[1]; slot++) {
+        series.set(slot, Double.NaN);
+      }
+    }
+    OutageIndex index = OutageIndex.of(series);
+    Check.equal(runs.length, index.outages(), "outages on word edges");
+    for (int k = 0; k < runs.length; k++) {
+      Check.equal(START + runs[k][0] * STEP, index.outageStart(k), "start of outage " + k);
+      Check.equal(START + runs[k][1] * STEP, index.outageEnd(k), "end of outage " + k);
+    }
+    Check.equal(2, index.downSlots(63, 66), "down across the first word edge");
+    Check.equal(2, index.downSlots(127, 129), "down across the second word edge");
+    matchesScan(series, index, "word edges");
+  }
+
+  static void noReadings() {
+    for (int size : new int[] {1, 63, 64, 65, 128}) {
+      ArrayTimeSeries series = series(size);
+      OutageIndex index = OutageIndex.of(series);
+      Check.equal(1, index.outages(), "outages without readings in " + size);
+      Check.equal(START, index.outageStart(0), "outage start without readings in " + size);
+      Check.equal(START + size * STEP, index.outageEnd(0),
+              "outage end without readings in " + size);
+      Check.same(0, index.uptime(START, START + size * STEP), "uptime without readings");
+      matchesScan(series, index, "no readings in " + size);
+    }
+  }
+
+  static void allReadings() {
+    ArrayTimeSeries series = series(130);
+    for (int slot = 0; slot < 130; slot++) {
+      series.set(slot, 0);
+    }
+    OutageIndex index = OutageIndex.of(series);
+    Check.equal(0, index.outages(), "outages with every reading");
+    Check.isTrue(!index.wasDown(START - STEP, START + 200 * STEP), "never down");
+    Check.same(1, index.uptime(START, START + 130 * STEP), "full uptime");
+    matchesScan(series, index, "every reading");
+  }
+
+  /**
+   * Changing bits one at a time gives the same outages as indexing the readings again
+   */
+  static void marks() {
+    Random random = new Random(18);
+    ArrayTimeSeries series = series(300);
+    OutageIndex index = OutageIndex.of(series);
+    for (int i = 0; i < 2000; i++) {
+      int slot = random.nextInt(300);
+      boolean reading = random.nextBoolean();
+      series.set(slot, reading ? i : Double.NaN);
+      index.mark(slot, reading);
+      if (i % 50 == 0) {
+        matchesScan(series, index, "after " + i + " marks");
+      }
+    }
+    matchesScan(series, index, "after every mark");
+    int outages = index.outages();
+    boolean down = index.isDown(7);
+    index.mark(7, !down);
+    Check.equal(outages, index.outages(), "marking a bit as it already is");
+    Check.fails(IndexOutOfBoundsException.class, () -> index.mark(300, true), "mark past the end");
+  }
+
+  /**
+   * A building is down only where all of its sites are, even if a site has its own axis
+   */
+  static void buildings() {
+    ArrayTimeSeries first = series(100);
+    ArrayTimeSeries second = series(100);
+    ArrayTimeSeries later = new ArrayTimeSeries(START + 50 * STEP, START + 99 * STEP, STEP);
+    for (int slot = 0; slot < 100; slot++) {
+      if (slot < 40) {
+        first.set(slot, 1);
+      }
+      if (slot >= 60 && slot < 70) {
+        second.set(slot, 1);
+      }
+      if (slot >= 90) {
+        later.set(slot - 50, 1);
+      }
+    }
+    Site[] sites = {new SiteImpl(0, 0, first), new SiteImpl(1, 0, second),
+      new SiteImpl(2, 0, later)};
+    OutageIndex building = OutageIndex.of(sites, series(100));
+    Check.equal(2, building.outages(), "building outages");
+    Check.equal(START + 40 * STEP, building.outageStart(0), "first building outage start");
+    Check.equal(START + 60 * STEP, building.outageEnd(0), "first building outage end");
+    Check.equal(START + 70 * STEP, building.outageStart(1), "second building outage start");
+    Check.equal(START + 90 * STEP, building.outageEnd(1), "second building outage end");
+    Check.equal(1, OutageIndex.of(new Site[0], series(100)).outages(),
+            "a building without sites is always down");
+    List<Site> down = OutageIndex.downBetween(Arrays.asList(sites), START, START + 50 * STEP);
+    Check.equal(2, down.size(), "sites down in the first half");
+    Check.isTrue(down.get(0) == sites[0] && down.get(1) == sites[1],
+            "which sites were down, before the last site has slots");
+  }
+
+  /**
+   * Times round to the slots a range of slots would cover
+   */
+  static void times() {
+    ArrayTimeSeries series = series(10);
+    series.set(4, 1);
+    series.set(5, 1);
+    OutageIndex index = OutageIndex.of(series);
+    Check.isTrue(!index.wasDown(START + 4 * STEP, START + 6 * STEP), "up for [4, 6)");
+    Check.isTrue(index.wasDown(START + 4 * STEP, START + 6 * STEP + 1), "down for [4, 7)");
+    Check.isTrue(!index.wasDown(START + 5 * STEP, START + 5 * STEP), "an empty range");
+    Check.isTrue(!index.isDownAt(START + 5 * STEP + STEP / 2 - 1), "rounds down to slot 5");
+    Check.isTrue(index.isDownAt(START + 5 * STEP + STEP / 2 + 1), "rounds up to slot 6");
+    Check.isTrue(index.isDownAt(START - STEP), "clamps before the start");
+    Check.same(0.5, index.uptime(START + 3 * STEP, START + 7 * STEP), "uptime of [3, 7)");
+    Check.fails(IllegalArgumentException.class, () -> index.uptime(START, START),
+            "uptime of an empty range");
+    Check.fails(IllegalArgumentException.class, () -> index.wasDown(START + 1, START),
+            "backwards times");
+    Check.fails(IndexOutOfBoundsException.class, () -> index.downSlots(0, 11),
+            "slots past the end");
+  }
+
+  /**
+   * Checks every slot and every range of the index against the readings
+   */
+  private static void matchesScan(TimeSeries series, OutageIndex index, String what) {
+    int size = series.size();
+    long[] down = new long[size + 1];
+    for (int slot = 0; slot < size; slot++) {
+      Check.isTrue(index.isDown(slot) != series.isSet(slot), what + ": slot " + slot);
+      down[slot + 1] = down[slot] + (series.isSet(slot) ? 0 : 1);
+    }
+    for (int from = 0; from <= size; from += from < 70 ? 1 : 7) {
+      for (int to = from; to <= size; to += to < 70 ? 1 : 5) {
+        Check.equal(down[to] - down[from], index.downSlots(from, to),
+                what + ": down in [" + from + ", " + to + ")");
+      }
+    }
+    int outages = 0;
+    for (int slot = 0; slot < size; slot++) {
+      if (!series.isSet(slot) && (slot == 0 || series.isSet(slot - 1))) {
+        Check.equal(series.time(slot), index.outageStart(outages), what + ": outage start");
+        outages++;
+      }
+    }
+    Check.equal(outages, index.outages(), what + ": outages");
+  }
+
+  private static ArrayTimeSeries series(int size) {
+    return new ArrayTimeSeries(START, START + STEP * (size - 1), STEP);
+  }
+}
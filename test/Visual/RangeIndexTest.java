@@ -0,0 +1,114 @@
+package Visual;
+
+import java.util.Random;
+
+/**
+ * Tests the range queries of RangeIndex against plain scans, around the edges of its blocks
+ */
+public class RangeIndexTest {
+  private static final long START = 1000;
+  private static final long STEP = 900;
+
+  public static void main(String[] args) {
+    matchesScans();
+    emptyRanges();
+    improperRanges();
+    times();
+    allUnset();
+    Check.done("RangeIndexTest");
+  }
+
+  /**
+   * Every range over sizes around the block length answers the same as a scan
+   */
+  static void matchesScans() {
+    Random random = new Random(6);
+    for (int size : new int[] {1, 2, 31, 32, 33, 64, 65, 97, 200}) {
+      ArrayTimeSeries series = series(size);
+      for (int slot = 0; slot < size; slot++) {
+        if (random.nextInt(8) > 0) {
+          series.set(slot, random.nextInt(2000) / 4.0 - 100);
+        }
+      }
+      RangeIndex index = new RangeIndex(series);
+      for (int from = 0; from < size; from++) {
+        for (int to = from + 1; to <= size; to++) {
+          double sum = 0;
+          double min = Double.POSITIVE_INFINITY;
+          double max = Double.NEGATIVE_INFINITY;
+          for (int slot = from; slot < to; slot++) {
+            sum += series.get(slot);
+            min = Math.min(min, series.get(slot));
+            max = Math.max(max, series.get(slot));
+          }
+          String range = size + " [" + from + ", " + to + ")";
+          Check.near(sum, index.sum(from, to), 1e-6, "sum of " + range);
+          Check.near(sum / (to - from), index.average(from, to), 1e-9, "average of " + range);
+          Check.same(min, index.min(from, to), "min of " + range);
+          Check.same(max, index.max(from, to), "max of " + range);
+        }
+      }
+    }
+  }
+
+  /**
+   * An empty range sums to zero but has no average, minimum or maximum
+   */
+  static void emptyRanges() {
+    ArrayTimeSeries series = series(40);
+    series.set(3, 5);
+    RangeIndex index = new RangeIndex(series);
+    for (int slot : new int[] {0, 31, 32, 40}) {
+      Check.same(0, index.sum(slot, slot), "sum of the empty range at " + slot);
+      final int at = slot;
+      Check.fails(IllegalArgumentException.class, () -> index.average(at, at), "empty average");
+      Check.fails(IllegalArgumentException.class, () -> index.min(at, at), "empty min");
+      Check.fails(IllegalArgumentException.class, () -> index.max(at, at), "empty max");
+    }
+    Check.same(0, index.energy(START + 10, START + 10), "energy of an empty time range");
+  }
+
+  static void improperRanges() {
+    RangeIndex index = new RangeIndex(series(10));
+    Check.fails(IllegalArgumentException.class, () -> index.sum(-1, 3), "negative start");
+    Check.fails(IllegalArgumentException.class, () -> index.sum(0, 11), "end past the size");
+    Check.fails(IllegalArgumentException.class, () -> index.sum(5, 4), "backwards range");
+    Check.fails(IllegalArgumentException.class, () -> index.energy(START + 1, START),
+            "backwards times");
+  }
+
+  /**
+   * Times cover the slots from the first at or after the start to the first at or after the end
+   */
+  static void times() {
+    ArrayTimeSeries series = series(10);
+    for (int slot = 0; slot < 10; slot++) {
+      series.set(slot, slot + 1);
+    }
+    RangeIndex index = new RangeIndex(series);
+    Check.equal(0, index.ceilingSlot(START - STEP), "ceiling before the start");
+    Check.equal(0, index.ceilingSlot(START), "ceiling at the start");
+    Check.equal(1, index.ceilingSlot(START + 1), "ceiling just after the start");
+    Check.equal(10, index.ceilingSlot(START + 100 * STEP), "ceiling after the end");
+    // Slots 1 and 2 hold 2 and 3, for a quarter of an hour each
+    Check.near(5 * STEP / 3600.0, index.energy(START + 1, START + 2 * STEP + 1), 1e-9,
+            "energy");
+    Check.same(3, index.peak(START + 1, START + 2 * STEP + 1), "peak");
+    Check.same(2, index.trough(START + 1, START + 2 * STEP + 1), "trough");
+    Check.same(2.5, index.average(START + 1, START + 2 * STEP + 1), "average");
+  }
+
+  /**
+   * Slots without readings count as zero
+   */
+  static void allUnset() {
+    RangeIndex index = new RangeIndex(series(70));
+    Check.same(0, index.sum(0, 70), "sum without readings");
+    Check.same(0, index.min(3, 67), "min without readings");
+    Check.same(0, index.max(3, 67), "max without readings");
+  }
+
+  private static ArrayTimeSeries series(int size) {
+    return new ArrayTimeSeries(START, START + STEP * (size - 1), STEP);
+  }
+}
@@ -0,0 +1,128 @@
+package Visual;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Tests the conversions between times and slots of TimeAxis, and the axis MeasureParser finds
+ * for a measure file
+ */
+public class TimeAxisTest {
+  private static final long START = 1386547200;
+  private static final long STEP = 900;
+
+  public static void main(String[] args) throws IOException {
+    bounds();
+    slots();
+    equality();
+    measureFiles();
+    Check.done("TimeAxisTest");
+  }
+
+  static void bounds() {
+    TimeAxis single = new TimeAxis(START, START, STEP);
+    Check.equal(1, single.size(), "size of a single slot");
+    Check.equal(START, single.end(), "end of a single slot");
+    TimeAxis rounded = new TimeAxis(START, START + 2 * STEP + STEP - 1, STEP);
+    Check.equal(3, rounded.size(), "an end between steps rounds down");
+    Check.equal(START + 2 * STEP, rounded.end(), "the rounded end");
+    Check.fails(IllegalArgumentException.class, () -> new TimeAxis(START, START - 1, STEP),
+            "end before start");
+    Check.fails(IllegalArgumentException.class, () -> new TimeAxis(START, START + STEP, 0),
+            "no step");
+    Check.fails(IllegalArgumentException.class, () -> new TimeAxis(START, START + STEP, -STEP),
+            "negative step");
+    Check.fails(IllegalArgumentException.class, () -> new TimeAxis(0, Long.MAX_VALUE, 1),
+            "too many slots");
+    Check.fails(IllegalArgumentException.class,
+        () -> new TimeAxis(Long.MIN_VALUE, Long.MAX_VALUE, 1), "more time than a long holds");
+    Check.fails(IllegalArgumentException.class, () -> new TimeAxis(0, Integer.MAX_VALUE, 1),
+            "one slot too many");
+    TimeAxis largest = new TimeAxis(0, Integer.MAX_VALUE - 1, 1);
+    Check.equal(Integer.MAX_VALUE, largest.size(), "the most slots");
+  }
+
+  static void slots() {
+    TimeAxis axis = new TimeAxis(START, START + 9 * STEP, STEP);
+    Check.equal(0, axis.slot(Long.MIN_VALUE), "slot long before the start");
+    Check.equal(0, axis.slot(START), "slot at the start");
+    Check.equal(9, axis.slot(Long.MAX_VALUE - STEP), "slot long after the end");
+    Check.equal(9, axis.slot(axis.end()), "slot at the end");
+    // Halfway between two slots rounds down, just past halfway rounds up
+    Check.equal(3, axis.slot(START + 3 * STEP + STEP / 2 - 1), "just before halfway");
+    Check.equal(3, axis.slot(START + 3 * STEP + STEP / 2), "halfway");
+    Check.equal(4, axis.slot(START + 3 * STEP + STEP / 2 + 1), "just after halfway");
+    for (int slot = 0; slot < axis.size(); slot++) {
+      Check.equal(slot, axis.slot(axis.time(slot)), "slot of the time of " + slot);
+      Check.equal(axis.time(slot), axis.round(axis.time(slot) + 1), "round of " + slot);
+    }
+    Check.fails(IndexOutOfBoundsException.class, () -> axis.time(-1), "time of slot -1");
+    Check.fails(IndexOutOfBoundsException.class, () -> axis.time(10), "time past the end");
+    TimeAxis odd = new TimeAxis(0, 30, 3);
+    Check.equal(1, odd.slot(4), "odd step rounds down");
+    Check.equal(2, odd.slot(5), "odd step rounds up");
+  }
+
+  static void equality() {
+    TimeAxis axis = new TimeAxis(START, START + 9 * STEP, STEP);
+    TimeAxis same = new TimeAxis(START, START + 9 * STEP + 1, STEP);
+    Check.isTrue(axis.equals(same), "axes with the same slots are equal");
+    Check.equal(axis.hashCode(), same.hashCode(), "equal axes hash alike");
+    Check.isTrue(!axis.equals(new TimeAxis(START, START + 8 * STEP, STEP)), "other size");
+    Check.isTrue(!axis.equals(new TimeAxis(START + 1, START + 9 * STEP + 1, STEP)),
+            "other start");
+    Check.isTrue(!axis.equals(new TimeAxis(START, START + 9 * STEP, STEP / 2)), "other step");
+    Check.isTrue(!axis.equals(null), "not equal to null");
+  }
+
+  /**
+   * The step of a measure file is the greatest common divisor of the times between its first
+   * rows, however they are spaced
+   */
+  static void measureFiles() throws IOException {
+    TimeAxis regular = axisOf(START, START + STEP, START + 2 * STEP, START + 3 * STEP);
+    Check.isTrue(regular.equals(new TimeAxis(START, START + 3 * STEP, STEP)), "regular rows");
+    TimeAxis repeated = axisOf(START, START, START + STEP, START + 2 * STEP);
+    Check.equal(STEP, repeated.step(), "a repeated time");
+    TimeAxis gap = axisOf(START, START + 4 * STEP, START + 5 * STEP);
+    Check.equal(STEP, gap.step(), "a gap");
+    Check.equal(6, gap.size(), "the slots over a gap");
+    TimeAxis unordered = axisOf(START + STEP, START, START + 2 * STEP, START + 3 * STEP);
+    Check.equal(START, unordered.start(), "the start of rows out of order");
+    Check.equal(STEP, unordered.step(), "the step of rows out of order");
+    Check.equal(STEP / 3, axisOf(START, START + STEP, START + STEP + STEP / 3).step(),
+            "a step that divides the others");
+    Check.fails(IllegalArgumentException.class, () -> axisOf(START, START, START),
+            "rows at one time");
+    Check.fails(IOException.class, () -> axisOf(START), "a single row");
+    Check.fails(IOException.class, () -> axisOf(), "no rows");
+    // Only the first thousand or so rows are sampled, so a last row before them is caught by
+    // its own time
+    long[] late = new long[2000];
+    for (int row = 0; row < late.length - 1; row++) {
+      late[row] = START + row * STEP;
+    }
+    late[late.length - 1] = START - STEP;
+    Check.fails(IOException.class, () -> axisOf(late), "a last row before the start");
+  }
+
+  /**
+   * Writes a measure file with a row at each of the given times and finds its axis
+   */
+  private static TimeAxis axisOf(long... times) throws IOException {
+    File file = File.createTempFile("measure", ".csv");
+    try {
+      try (Writer out = new FileWriter(file)) {
+        out.write("time,0,1\n");
+        for (long time : times) {
+          out.write(time + ",1.5,2\n");
+        }
+      }
+      return MeasureParser.axisOf(file.getPath());
+    } finally {
+      file.delete();
+    }
+  }
+}